@@ -1,15 +1,21 @@
 package com.github.duskmage2009;
 
 
-import com.github.duskmage2009.model.Deck;
 import com.github.duskmage2009.output.XmlStatisticsWriter;
+import com.github.duskmage2009.processor.DeckFileFinder;
+import com.github.duskmage2009.processor.DirectoryWatcher;
+import com.github.duskmage2009.processor.ExecutorMode;
 import com.github.duskmage2009.processor.FileProcessor;
+import com.github.duskmage2009.statistics.MultiStatisticsAccumulator;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
 import com.github.duskmage2009.statistics.StatisticsCalculator;
+import com.github.duskmage2009.statistics.StatisticsCube;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -18,42 +24,161 @@ public class GwentStatisticsApp {
     private static final Logger log = LoggerFactory.getLogger(GwentStatisticsApp.class);
     private static final int DEFAULT_THREAD_COUNT = 4;
 
+    private static final String SNAPSHOT_OPTION = "--snapshot";
+    private static final String INCREMENTAL_OPTION = "--incremental";
+    private static final String WATCH_OPTION = "--watch";
+    private static final String VIRTUAL_THREADS_OPTION = "--virtual-threads";
+    private static final String PIPELINE_OPTION = "--pipeline";
+    private static final String RECURSIVE_OPTION = "--recursive";
+    private static final String MAX_DEPTH_OPTION = "--max-depth";
+    private static final String INCLUDE_OPTION = "--include";
+    private static final String EXCLUDE_OPTION = "--exclude";
+    private static final String HEAP_BUDGET_OPTION = "--heap-budget";
+    private static final String TOP_K_OPTION = "--top-k";
+    private static final String QUANTILE_ACCURACY_OPTION = "--quantile-accuracy";
+    private static final String TOP_OPTION = "--top";
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+
     public static void main(String[] args) {
-        if (args.length < 2) {
+        List<String> positional = new ArrayList<>();
+        boolean useSnapshot = false;
+        boolean incremental = false;
+        boolean watch = false;
+        boolean virtualThreads = false;
+        boolean pipeline = false;
+        int maxDepth = 1;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        long heapBudget = 0;
+        int topK = 0;
+        double quantileAccuracy = StatisticsAccumulator.DEFAULT_QUANTILE_ACCURACY;
+        int top = 0;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                boolean hasValue = i + 1 < args.length;
+                if (arg.equals(SNAPSHOT_OPTION)) {
+                    useSnapshot = true;
+                } else if (arg.equals(INCREMENTAL_OPTION)) {
+                    incremental = true;
+                } else if (arg.equals(WATCH_OPTION)) {
+                    watch = true;
+                } else if (arg.equals(VIRTUAL_THREADS_OPTION)) {
+                    virtualThreads = true;
+                } else if (arg.equals(PIPELINE_OPTION)) {
+                    pipeline = true;
+                } else if (arg.equals(RECURSIVE_OPTION)) {
+                    maxDepth = Integer.MAX_VALUE;
+                } else if (arg.equals(MAX_DEPTH_OPTION) && hasValue) {
+                    maxDepth = parseIntOption(MAX_DEPTH_OPTION, args[++i], 1);
+                } else if (arg.equals(INCLUDE_OPTION) && hasValue) {
+                    includes.add(args[++i]);
+                } else if (arg.equals(EXCLUDE_OPTION) && hasValue) {
+                    excludes.add(args[++i]);
+                } else if (arg.equals(HEAP_BUDGET_OPTION) && hasValue) {
+                    heapBudget = parseHeapBudget(args[++i]);
+                } else if (arg.equals(TOP_K_OPTION) && hasValue) {
+                    topK = parseIntOption(TOP_K_OPTION, args[++i], 0);
+                } else if (arg.equals(QUANTILE_ACCURACY_OPTION) && hasValue) {
+                    quantileAccuracy = parseQuantileAccuracy(args[++i]);
+                } else if (arg.equals(TOP_OPTION) && hasValue) {
+                    top = parseIntOption(TOP_OPTION, args[++i], 0);
+                } else {
+                    positional.add(arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            System.exit(1);
+        }
+
+        if (positional.size() < 2) {
             System.exit(1);
         }
 
-        String directoryPath = args[0];
-        String attribute = args[1];
-        int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_THREAD_COUNT;
+        String directoryPath = positional.get(0);
+        String attribute = positional.get(1);
+        int threadCount = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : DEFAULT_THREAD_COUNT;
 
         try {
             long startTime = System.currentTimeMillis();
 
 
             log.info("Starting Gwent Statistics Application");
-            log.info("Directory: {}, Attribute: {}, Threads: {}", directoryPath, attribute, threadCount);
+            log.info("Directory: {}, Attribute: {}, Threads: {}, Snapshot: {}, Incremental: {}, Watch: {}",
+                    directoryPath, attribute, threadCount, useSnapshot, incremental, watch);
+            if (maxDepth > 1 || !includes.isEmpty() || !excludes.isEmpty()) {
+                log.info("Max depth: {}, Include: {}, Exclude: {}",
+                        maxDepth == Integer.MAX_VALUE ? "unlimited" : maxDepth, includes, excludes);
+            }
 
 
             FileProcessor processor = new FileProcessor(threadCount);
+            if (virtualThreads) {
+                processor.setExecutorMode(ExecutorMode.VIRTUAL);
+            } else if (pipeline) {
+                processor.setExecutorMode(ExecutorMode.PIPELINE);
+            }
+            if (heapBudget > 0) {
+                processor.setHeapBudget(heapBudget);
+            }
+            processor.setTopK(topK);
+            processor.setQuantileAccuracy(quantileAccuracy);
+            if (topK > 0 && (incremental || watch)) {
+                log.warn("{} is ignored with {} and {}: they subtract changed files, so counts stay exact",
+                        TOP_K_OPTION, INCREMENTAL_OPTION, WATCH_OPTION);
+            }
+            DeckFileFinder fileFinder = processor.getFileFinder();
+            fileFinder.setMaxDepth(maxDepth);
+            includes.forEach(fileFinder::addInclude);
+            excludes.forEach(fileFinder::addExclude);
             Path path = Paths.get(directoryPath);
-            List<Deck> decks = processor.processDirectory(path);
+            List<String> attributes = MultiStatisticsAccumulator.parseAttributes(attribute);
+            if (watch) {
+                if (attributes.size() != 1) {
+                    log.error("{} keeps the statistics for one attribute only", WATCH_OPTION);
+                    System.exit(1);
+                }
+                watch(processor, path, attributes.get(0), top, directoryPath);
+                return;
+            }
+
+            // All requested attributes are counted in the same pass over the decks
+            MultiStatisticsAccumulator accumulator;
+            if (incremental) {
+                accumulator = processor.aggregateDirectoryIncrementally(path, attributes);
+            } else if (useSnapshot) {
+                accumulator = new MultiStatisticsAccumulator(attributes, topK, quantileAccuracy);
+                accumulator.accept(processor.openSnapshot(path));
+            } else {
+                accumulator = processor.aggregateDirectory(path, attributes);
+            }
 
-            if (decks.isEmpty()) {
+            if (accumulator.getDeckCount() == 0) {
                 log.warn("No decks found. Exiting.");
                 return;
             }
 
 
             StatisticsCalculator calculator = new StatisticsCalculator();
-            calculator.printSummary(decks);
-
-            Map<String, Integer> statistics = calculator.calculateStatistics(decks, attribute);
-
-            int count = 0;
+            calculator.printSummary(accumulator);
 
             XmlStatisticsWriter writer = new XmlStatisticsWriter();
-            writer.writeStatistics(statistics, attribute, directoryPath);
+            for (StatisticsAccumulator statistics : accumulator.getAccumulators()) {
+                Map<String, Long> values = statistics.getStatistics(top);
+                if (statistics.isApproximate()) {
+                    long errorBound = statistics.getErrorBound(top);
+                    log.info("Top {} values of {} are approximate; unlisted values occurred at most {} times",
+                            values.size(), statistics.getAttribute(), errorBound);
+                    writer.writeStatistics(values, statistics.getErrorBounds(top), errorBound,
+                            statistics.getAttribute(), directoryPath);
+                } else {
+                    writer.writeStatistics(values, statistics.getAttribute(), directoryPath);
+                }
+            }
+            for (StatisticsCube cube : accumulator.getCubes()) {
+                writer.writeCube(cube.getDimensions(), cube.getCells(), directoryPath);
+            }
 
             long endTime = System.currentTimeMillis();
             long duration = endTime - startTime;
@@ -62,7 +187,8 @@ public class GwentStatisticsApp {
             log.info("Processing completed successfully in {} ms", duration);
 
         } catch (IllegalArgumentException e) {
-            log.error("Invalid attribute: {}", attribute);
+            // Unsupported attributes, and attributes the chosen mode cannot count
+            log.error("Invalid arguments for attribute {}: {}", attribute, e.getMessage());
             System.exit(1);
         } catch (Exception e) {
             log.error("Application error", e);
@@ -70,4 +196,87 @@ public class GwentStatisticsApp {
         }
     }
 
+    /**
+     * Parses the value of a numeric option.
+     *
+     * @throws IllegalArgumentException naming the option if the value is not an integer of at least {@code min}
+     */
+    private static int parseIntOption(String option, String value, int min) {
+        long parsed = parseLongOption(option, value, min);
+        if (parsed > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(option + " must be at most " + Integer.MAX_VALUE + ": " + value);
+        }
+        return (int) parsed;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the option if the value is not an integer of at least {@code min}
+     */
+    private static long parseLongOption(String option, String value, long min) {
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects an integer but got: " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min + ": " + value);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the heap budget in megabytes.
+     *
+     * @return the heap budget in bytes
+     * @throws IllegalArgumentException naming the option if the value is not a positive integer
+     *                                  or does not fit in a long once converted to bytes
+     */
+    private static long parseHeapBudget(String value) {
+        long megabytes = parseLongOption(HEAP_BUDGET_OPTION, value, 1);
+        if (megabytes > Long.MAX_VALUE / BYTES_PER_MEGABYTE) {
+            throw new IllegalArgumentException(HEAP_BUDGET_OPTION + " must be at most "
+                    + Long.MAX_VALUE / BYTES_PER_MEGABYTE + ": " + value);
+        }
+        return megabytes * BYTES_PER_MEGABYTE;
+    }
+
+    /**
+     * @throws IllegalArgumentException naming the option if the value is not a number of at least
+     *                                  {@link StatisticsAccumulator#MIN_QUANTILE_ACCURACY} and below 1
+     */
+    private static double parseQuantileAccuracy(String value) {
+        double parsed;
+        try {
+            parsed = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(QUANTILE_ACCURACY_OPTION + " expects a number but got: " + value);
+        }
+        if (!(parsed >= StatisticsAccumulator.MIN_QUANTILE_ACCURACY && parsed < 1)) {
+            throw new IllegalArgumentException(QUANTILE_ACCURACY_OPTION + " must be at least "
+                    + StatisticsAccumulator.MIN_QUANTILE_ACCURACY + " and below 1: " + value);
+        }
+        return parsed;
+    }
+
+    /**
+     * Keeps the XML file up to date with the directory until the application is stopped.
+     */
+    private static void watch(FileProcessor processor, Path path, String attribute, int top,
+                              String directoryPath) throws Exception {
+        XmlStatisticsWriter writer = new XmlStatisticsWriter();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(processor, path, attribute, accumulator -> {
+            try {
+                writer.writeStatistics(accumulator.getStatistics(top), attribute, directoryPath);
+            } catch (Exception e) {
+                log.error("Failed to write statistics", e);
+            }
+        })) {
+            StatisticsAccumulator accumulator = watcher.start();
+            new StatisticsCalculator().printSummary(accumulator);
+
+            log.info("Watching {} for changes, press Ctrl+C to stop", directoryPath);
+            watcher.run();
+        }
+    }
 }
\ No newline at end of file
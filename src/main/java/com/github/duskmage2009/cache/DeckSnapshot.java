@@ -0,0 +1,351 @@
+package com.github.duskmage2009.cache;
+
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.CardType;
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Read-only columnar view of a parsed deck corpus, memory-mapped from a snapshot file.
+ * <p>
+ * Layout (big-endian): header (magic, version, input fingerprint), string dictionary,
+ * card dictionary as columns (name id, provision, power, type ordinal, faction ordinal),
+ * deck columns (name id, faction ordinal, leader ability id, provision limit, categories id,
+ * entry offsets) and the (card id, copies) entry columns of all decks.
+ * Null values are stored as {@link #NULL_ID}, {@link #NULL_INT} and {@link #NULL_ORDINAL}.
+ * <p>
+ * The large deck and entry columns stay in the mapping and are read in place;
+ * only the string and card dictionaries are decoded onto the heap. A file is mapped in windows
+ * of at most 2 GB and int columns in segments of {@link #SEGMENT_SHIFT 2<sup>28</sup>} values,
+ * so snapshots larger than one mapping can be read.
+ */
+public class DeckSnapshot {
+    static final int MAGIC = 0x47574E54;
+    static final int VERSION = 1;
+    static final int NULL_ID = -1;
+    static final int NULL_INT = Integer.MIN_VALUE;
+    static final int NULL_ORDINAL = -1;
+
+    /**
+     * Int columns are mapped in segments of 2<sup>SEGMENT_SHIFT</sup> values (1 GB).
+     */
+    static final int SEGMENT_SHIFT = 28;
+
+    private static final Faction[] FACTIONS = Faction.values();
+    private static final CardType[] CARD_TYPES = CardType.values();
+
+    private final long fingerprint;
+    private final String[] strings;
+    private final Card[] cards;
+    private final int[] cardUnitPowers;
+
+    private final int deckCount;
+    private final IntColumn deckNames;
+    private final ByteBuffer deckFactions;
+    private final IntColumn leaderAbilities;
+    private final IntColumn provisionLimits;
+    private final IntColumn categories;
+    private final IntColumn entryOffsets;
+
+    private final IntColumn entryCards;
+    private final IntColumn entryCopies;
+
+    private DeckSnapshot(Reader reader) throws IOException {
+        try {
+            if (reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+                throw new IOException("Not a deck snapshot of version " + VERSION);
+            }
+            fingerprint = reader.getLong();
+
+            strings = new String[reader.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(reader.getBytes(reader.getInt()), StandardCharsets.UTF_8);
+            }
+
+            int cardCount = reader.getInt();
+            IntColumn cardNames = reader.intColumn(cardCount);
+            IntColumn provisions = reader.intColumn(cardCount);
+            IntColumn powers = reader.intColumn(cardCount);
+            ByteBuffer types = reader.byteColumn(cardCount);
+            ByteBuffer cardFactions = reader.byteColumn(cardCount);
+
+            cards = new Card[cardCount];
+            cardUnitPowers = new int[cardCount];
+            for (int i = 0; i < cardCount; i++) {
+                Integer power = nullable(powers.get(i));
+                CardType type = ordinal(CARD_TYPES, types.get(i));
+                cards[i] = new Card(string(cardNames.get(i)), nullable(provisions.get(i)), power,
+                        type, ordinal(FACTIONS, cardFactions.get(i)));
+                cardUnitPowers[i] = type == CardType.UNIT && power != null ? power : 0;
+            }
+
+            deckCount = reader.getInt();
+            deckNames = reader.intColumn(deckCount);
+            deckFactions = reader.byteColumn(deckCount);
+            leaderAbilities = reader.intColumn(deckCount);
+            provisionLimits = reader.intColumn(deckCount);
+            categories = reader.intColumn(deckCount);
+            entryOffsets = reader.intColumn(deckCount + 1);
+
+            int entryCount = reader.getInt();
+            entryCards = reader.intColumn(entryCount);
+            entryCopies = reader.intColumn(entryCount);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            throw new IOException("Truncated deck snapshot", e);
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file.
+     *
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static DeckSnapshot open(Path file) throws IOException {
+        return open(file, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Memory-maps a snapshot file with int column segments of 2<sup>segmentShift</sup> values and
+     * mapped windows of twice that size, so that tests can cross segments with small files.
+     */
+    static DeckSnapshot open(Path file, int segmentShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DeckSnapshot(new Reader(channel, segmentShift));
+        }
+    }
+
+    /**
+     * Fingerprint of the input files the snapshot was built from.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getDeckCount() {
+        return deckCount;
+    }
+
+    public int getCardTableSize() {
+        return cards.length;
+    }
+
+    /**
+     * Shared card instance for a card id; the same id always returns the same instance.
+     */
+    public Card getCard(int cardId) {
+        return cardId == NULL_ID ? null : cards[cardId];
+    }
+
+    public Faction getDeckFaction(int deck) {
+        return ordinal(FACTIONS, deckFactions.get(deck));
+    }
+
+    public String getLeaderAbility(int deck) {
+        return string(leaderAbilities.get(deck));
+    }
+
+    public String getCategories(int deck) {
+        return string(categories.get(deck));
+    }
+
+    public int getCardCount(int deck) {
+        int count = 0;
+        for (int entry = entryOffsets.get(deck); entry < entryOffsets.get(deck + 1); entry++) {
+            count += entryCopies.get(entry);
+        }
+        return count;
+    }
+
+    /**
+     * Same value as {@link Deck#getTotalUnitPower()}, computed from the columns.
+     */
+    public int getTotalUnitPower(int deck) {
+        int total = 0;
+        for (int entry = entryOffsets.get(deck); entry < entryOffsets.get(deck + 1); entry++) {
+            int cardId = entryCards.get(entry);
+            if (cardId != NULL_ID) {
+                total += cardUnitPowers[cardId] * entryCopies.get(entry);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Same value as {@link Deck#getTotalProvisionUsed()}, computed from the columns.
+     */
+    public int getTotalProvisionUsed(int deck) {
+        int total = 0;
+        for (int entry = entryOffsets.get(deck); entry < entryOffsets.get(deck + 1); entry++) {
+            Card card = getCard(entryCards.get(entry));
+            if (card != null && card.getProvision() != null) {
+                total += card.getProvision() * entryCopies.get(entry);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Total number of copies of every card id over all decks, in one pass over the entry columns.
+     */
+    public long[] getCardWeights() {
+        long[] weights = new long[cards.length];
+        int entryCount = entryCards.length();
+        for (int entry = 0; entry < entryCount; entry++) {
+            int cardId = entryCards.get(entry);
+            if (cardId != NULL_ID) {
+                weights[cardId] += entryCopies.get(entry);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Rebuilds a deck from the columns; cards are the shared instances of the card table.
+     */
+    public Deck getDeck(int deck) {
+        List<CardCopies> cardCopies = new ArrayList<>(entryOffsets.get(deck + 1) - entryOffsets.get(deck));
+        for (int entry = entryOffsets.get(deck); entry < entryOffsets.get(deck + 1); entry++) {
+            cardCopies.add(new CardCopies(getCard(entryCards.get(entry)), entryCopies.get(entry)));
+        }
+
+        Deck result = new Deck(string(deckNames.get(deck)), getDeckFaction(deck), getLeaderAbility(deck),
+                nullable(provisionLimits.get(deck)), getCategories(deck), null);
+        result.setCardCopies(cardCopies);
+        return result;
+    }
+
+    public void forEachDeck(Consumer<Deck> deckConsumer) {
+        for (int deck = 0; deck < deckCount; deck++) {
+            deckConsumer.accept(getDeck(deck));
+        }
+    }
+
+    private String string(int id) {
+        return id == NULL_ID ? null : strings[id];
+    }
+
+    private static Integer nullable(int value) {
+        return value == NULL_INT ? null : value;
+    }
+
+    private static <E> E ordinal(E[] values, byte ordinal) {
+        return ordinal == NULL_ORDINAL ? null : values[ordinal];
+    }
+
+    /**
+     * Int column read in place from one or more mapped segments.
+     */
+    private static final class IntColumn {
+        private final IntBuffer first;
+        private final int firstLength;
+        private final IntBuffer[] segments;
+        private final int shift;
+        private final int mask;
+        private final int length;
+
+        IntColumn(IntBuffer[] segments, int shift, int length) {
+            this.first = segments[0];
+            this.firstLength = first.limit();
+            this.segments = segments;
+            this.shift = shift;
+            this.mask = (1 << shift) - 1;
+            this.length = length;
+        }
+
+        int get(int index) {
+            // Nearly every column fits into its first segment
+            return index < firstLength ? first.get(index) : segments[index >>> shift].get(index & mask);
+        }
+
+        int length() {
+            return length;
+        }
+    }
+
+    /**
+     * Reads the file front to back through a mapped window that is moved forward whenever the
+     * next value does not fit into it; columns are sliced out of the window without copying.
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private final long size;
+        private final int segmentShift;
+        private final int windowSize;
+        private ByteBuffer window = ByteBuffer.allocate(0);
+        private long windowStart;
+
+        Reader(FileChannel channel, int segmentShift) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.segmentShift = segmentShift;
+            this.windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * Integer.BYTES << segmentShift);
+        }
+
+        int getInt() throws IOException {
+            return window(Integer.BYTES).getInt();
+        }
+
+        long getLong() throws IOException {
+            return window(Long.BYTES).getLong();
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            window(length).get(bytes);
+            return bytes;
+        }
+
+        ByteBuffer byteColumn(int length) throws IOException {
+            ByteBuffer column = window(length).slice(window.position(), length);
+            window.position(window.position() + length);
+            return column;
+        }
+
+        IntColumn intColumn(int length) throws IOException {
+            if (length < 0) {
+                throw new IOException("Truncated deck snapshot");
+            }
+            int segmentLength = 1 << segmentShift;
+            IntBuffer[] segments = new IntBuffer[Math.max(1, (int) (((long) length + segmentLength - 1) >>> segmentShift))];
+            int remaining = length;
+            for (int i = 0; i < segments.length; i++) {
+                int bytes = Math.min(remaining, segmentLength) * Integer.BYTES;
+                segments[i] = window(bytes).slice(window.position(), bytes).asIntBuffer();
+                window.position(window.position() + bytes);
+                remaining -= bytes / Integer.BYTES;
+            }
+            return new IntColumn(segments, segmentShift, length);
+        }
+
+        /**
+         * Returns the window positioned at the next value, mapping the file from there on if the
+         * value's bytes are not all in the current window.
+         */
+        private ByteBuffer window(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long start = windowStart + window.position();
+                if (size - start < bytes) {
+                    throw new IOException("Truncated deck snapshot");
+                }
+                window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.max(bytes, Math.min(size - start, windowSize)));
+                windowStart = start;
+            }
+            return window;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.duskmage2009.cache;
+
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.Deck;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Collects decks into the columns of a {@link DeckSnapshot}: a dictionary of distinct cards,
+ * a dictionary of strings, primitive per-deck columns and the (card id, copies) entries of all
+ * decks. Decks can be dropped as soon as they are accepted.
+ * <p>
+ * Not thread-safe: each worker fills its own builder and the builders are combined in order
+ * with {@link #merge(DeckSnapshotBuilder)}.
+ */
+public class DeckSnapshotBuilder implements Consumer<Deck> {
+    private final Map<Card, Integer> cardIds = new HashMap<>();
+    private final List<Card> cards = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    private final IntColumn deckNames = new IntColumn();
+    private final IntColumn deckFactions = new IntColumn();
+    private final IntColumn leaderAbilities = new IntColumn();
+    private final IntColumn provisionLimits = new IntColumn();
+    private final IntColumn categories = new IntColumn();
+    private final IntColumn entryOffsets = new IntColumn();
+
+    private final IntColumn entryCards = new IntColumn();
+    private final IntColumn entryCopies = new IntColumn();
+
+    @Override
+    public void accept(Deck deck) {
+        deckNames.add(stringId(deck.getName()));
+        deckFactions.add(deck.getFaction() != null ? deck.getFaction().ordinal() : DeckSnapshot.NULL_ORDINAL);
+        leaderAbilities.add(stringId(deck.getLeaderAbility()));
+        provisionLimits.add(deck.getProvisionLimit() != null ? deck.getProvisionLimit() : DeckSnapshot.NULL_INT);
+        categories.add(stringId(deck.getCategories()));
+        entryOffsets.add(entryCards.size());
+
+        List<CardCopies> cardCopies = deck.getCardCopies();
+        if (cardCopies != null) {
+            for (CardCopies entry : cardCopies) {
+                entryCards.add(cardId(entry.getCard()));
+                entryCopies.add(entry.getCopies());
+            }
+        }
+    }
+
+    /**
+     * Appends all decks of another builder after the decks of this one.
+     */
+    public void merge(DeckSnapshotBuilder other) {
+        int[] cardMapping = new int[other.cards.size()];
+        for (int i = 0; i < cardMapping.length; i++) {
+            cardMapping[i] = cardId(other.cards.get(i));
+        }
+        int[] stringMapping = new int[other.strings.size()];
+        for (int i = 0; i < stringMapping.length; i++) {
+            stringMapping[i] = stringId(other.strings.get(i));
+        }
+
+        int entryBase = entryCards.size();
+        for (int deck = 0; deck < other.getDeckCount(); deck++) {
+            deckNames.add(mapId(stringMapping, other.deckNames.get(deck)));
+            deckFactions.add(other.deckFactions.get(deck));
+            leaderAbilities.add(mapId(stringMapping, other.leaderAbilities.get(deck)));
+            provisionLimits.add(other.provisionLimits.get(deck));
+            categories.add(mapId(stringMapping, other.categories.get(deck)));
+            entryOffsets.add(entryBase + other.entryOffsets.get(deck));
+        }
+        for (int entry = 0; entry < other.entryCards.size(); entry++) {
+            entryCards.add(mapId(cardMapping, other.entryCards.get(entry)));
+            entryCopies.add(other.entryCopies.get(entry));
+        }
+    }
+
+    public int getDeckCount() {
+        return deckNames.size();
+    }
+
+    /**
+     * Writes the snapshot file in the layout read by {@link DeckSnapshot#open(Path)}.
+     */
+    public void writeTo(Path file, long fingerprint) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            out.writeInt(DeckSnapshot.MAGIC);
+            out.writeInt(DeckSnapshot.VERSION);
+            out.writeLong(fingerprint);
+
+            out.writeInt(strings.size());
+            for (String value : strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(cards.size());
+            for (Card card : cards) {
+                out.writeInt(stringId(card.getName()));
+            }
+            for (Card card : cards) {
+                out.writeInt(card.getProvision() != null ? card.getProvision() : DeckSnapshot.NULL_INT);
+            }
+            for (Card card : cards) {
+                out.writeInt(card.getPower() != null ? card.getPower() : DeckSnapshot.NULL_INT);
+            }
+            for (Card card : cards) {
+                out.writeByte(card.getType() != null ? card.getType().ordinal() : DeckSnapshot.NULL_ORDINAL);
+            }
+            for (Card card : cards) {
+                out.writeByte(card.getFaction() != null ? card.getFaction().ordinal() : DeckSnapshot.NULL_ORDINAL);
+            }
+
+            out.writeInt(getDeckCount());
+            deckNames.writeTo(out);
+            for (int deck = 0; deck < getDeckCount(); deck++) {
+                out.writeByte(deckFactions.get(deck));
+            }
+            leaderAbilities.writeTo(out);
+            provisionLimits.writeTo(out);
+            categories.writeTo(out);
+            entryOffsets.writeTo(out);
+            out.writeInt(entryCards.size());
+
+            out.writeInt(entryCards.size());
+            entryCards.writeTo(out);
+            entryCopies.writeTo(out);
+        }
+    }
+
+    private int cardId(Card card) {
+        if (card == null) {
+            return DeckSnapshot.NULL_ID;
+        }
+        Integer id = cardIds.get(card);
+        if (id == null) {
+            // Card names must be in the string table before it is written
+            stringId(card.getName());
+            id = cards.size();
+            cardIds.put(card, id);
+            cards.add(card);
+        }
+        return id;
+    }
+
+    private int stringId(String value) {
+        if (value == null) {
+            return DeckSnapshot.NULL_ID;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    private static int mapId(int[] mapping, int id) {
+        return id == DeckSnapshot.NULL_ID ? id : mapping[id];
+    }
+
+    private static final class IntColumn {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.duskmage2009.cache;
+
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.statistics.MultiStatisticsAccumulator;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Partial statistics of one deck file (or one slice of it) for every supported attribute,
+ * collected in a single pass so the file never has to be parsed again while it is unchanged.
+ */
+public class FileAggregate implements Consumer<Deck> {
+    private final Path file;
+    private final MultiStatisticsAccumulator partials = new MultiStatisticsAccumulator(StatisticsAccumulator.ATTRIBUTES);
+    private String contentHash;
+
+    public FileAggregate(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void accept(Deck deck) {
+        partials.accept(deck);
+    }
+
+    /**
+     * Adds the counters of a later slice of the same file.
+     */
+    public FileAggregate merge(FileAggregate other) {
+        partials.merge(other.partials);
+        if (contentHash == null) {
+            contentHash = other.contentHash;
+        }
+        return this;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the partial result for one attribute, in any of its spellings.
+     */
+    public StatisticsAccumulator getPartial(String attribute) {
+        return partials.getAccumulator(attribute);
+    }
+
+    public List<StatisticsAccumulator> getPartials() {
+        return partials.getAccumulators();
+    }
+
+    /**
+     * {@link FileManifest#contentHash(Path) Content hash} of the whole file, set by the task of its first slice.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.duskmage2009.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-file record of the deck directory kept between runs: size, modification time and
+ * content hash of every file, together with its partial statistics for all attributes.
+ * A file whose size and modification time are unchanged is trusted without reading it;
+ * otherwise its content hash, computed by the parsing task from the bytes it reads, decides,
+ * so a file that was only touched keeps its recorded statistics.
+ * <p>
+ * {@link #hasContent} may be called from parsing threads while no entries are being changed;
+ * every other method must be called from one thread.
+ */
+public class FileManifest {
+    private static final Logger log = LoggerFactory.getLogger(FileManifest.class);
+
+    public static final String FILE_NAME = ".gwent-manifest";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Map<String, ManifestEntry> entries;
+    private final Map<String, ManifestEntry> pending = new HashMap<>();
+
+    private FileManifest(Path directory, Map<String, ManifestEntry> entries) {
+        this.directory = directory;
+        this.entries = entries;
+    }
+
+    /**
+     * Reads the directory's manifest; a missing or unreadable one is treated as empty.
+     */
+    public static FileManifest load(Path directory) {
+        Path manifestFile = directory.resolve(FILE_NAME);
+        Map<String, ManifestEntry> entries = new TreeMap<>();
+        if (Files.isRegularFile(manifestFile)) {
+            try {
+                entries.putAll(OBJECT_MAPPER.readValue(manifestFile.toFile(),
+                        new TypeReference<Map<String, ManifestEntry>>() {
+                        }));
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable manifest {}: {}", manifestFile, e.getMessage());
+            }
+        }
+        return new FileManifest(directory, entries);
+    }
+
+    /**
+     * Returns the cached entry if the file's size and modification time are unchanged since it
+     * was recorded, null if it has to be read. Only the file's attributes are read; its current
+     * state is remembered for {@link #record(FileAggregate)}.
+     */
+    public ManifestEntry lookup(Path file) throws IOException {
+        String key = key(file);
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        ManifestEntry entry = completeEntry(key);
+
+        if (entry != null && entry.getSize() == size && entry.getLastModified() == lastModified) {
+            return entry;
+        }
+
+        pending.put(key, new ManifestEntry(size, lastModified, null));
+        return null;
+    }
+
+    /**
+     * Whether the recorded statistics of a file belong to content with this hash, so that the
+     * file need not be parsed. Safe to call from parsing threads.
+     */
+    public boolean hasContent(Path file, String contentHash) {
+        ManifestEntry entry = completeEntry(key(file));
+        return entry != null && contentHash.equals(entry.getContentHash());
+    }
+
+    /**
+     * Stores the parsed statistics of a file previously reported as changed by {@link #lookup(Path)},
+     * or keeps the recorded ones if the aggregate's content hash shows the file was only touched.
+     *
+     * @throws IllegalStateException if the file was not looked up or the aggregate has no content hash
+     */
+    public ManifestEntry record(FileAggregate aggregate) {
+        String key = key(aggregate.getFile());
+        ManifestEntry state = pending.remove(key);
+        if (state == null) {
+            throw new IllegalStateException("File was not looked up before recording: " + aggregate.getFile());
+        }
+        if (aggregate.getContentHash() == null) {
+            throw new IllegalStateException("File was recorded without its content hash: " + aggregate.getFile());
+        }
+
+        ManifestEntry entry = completeEntry(key);
+        if (entry != null && aggregate.getContentHash().equals(entry.getContentHash())) {
+            entry.setSize(state.getSize());
+            entry.setLastModified(state.getLastModified());
+            return entry;
+        }
+
+        state.setContentHash(aggregate.getContentHash());
+        state.recordPartials(aggregate.getPartials());
+        entries.put(key, state);
+        return state;
+    }
+
+    /**
+     * Forgets every file that is no longer in the directory and returns how many there were.
+     */
+    public int retainFiles(List<Path> files) {
+        Set<String> keys = new HashSet<>();
+        for (Path file : files) {
+            keys.add(key(file));
+        }
+        int before = entries.size();
+        entries.keySet().retainAll(keys);
+        return before - entries.size();
+    }
+
+    /**
+     * Writes the manifest next to the final file and moves it into place.
+     */
+    public void save() throws IOException {
+        Path manifestFile = directory.resolve(FILE_NAME);
+        Path tempFile = directory.resolve(FILE_NAME + ".tmp");
+        try {
+            OBJECT_MAPPER.writeValue(tempFile.toFile(), entries);
+            Files.move(tempFile, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        log.info("Saved manifest with {} files: {}", entries.size(), manifestFile);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private String key(Path file) {
+        return directory.relativize(file).toString();
+    }
+
+    // Entries written before an attribute was added are parsed again
+    private ManifestEntry completeEntry(String key) {
+        ManifestEntry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        for (String attribute : StatisticsAccumulator.ATTRIBUTES) {
+            if (entry.toAccumulator(attribute) == null) {
+                return null;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Hash of a file's raw bytes (still compressed, for gzip files) as recorded in the manifest.
+     */
+    public static String contentHash(Path file) throws IOException {
+        MessageDigest digest = SnapshotCache.sha256();
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Same as {@link #contentHash(Path)} for a file whose raw bytes are the first {@code length}
+     * bytes of a buffer.
+     */
+    public static String contentHash(byte[] content, int length) {
+        MessageDigest digest = SnapshotCache.sha256();
+        digest.update(content, 0, length);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
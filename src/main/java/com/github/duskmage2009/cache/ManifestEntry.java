@@ -0,0 +1,110 @@
+package com.github.duskmage2009.cache;
+
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the {@link FileManifest} remembers about one deck file: the state it was parsed in
+ * and its partial statistics for every attribute, keyed by {@link StatisticsAccumulator#getKey()}.
+ */
+public class ManifestEntry {
+    private long size;
+    private long lastModified;
+    private String contentHash;
+    private long deckCount;
+    private long cardCount;
+    private long totalUnitPower;
+    private Map<String, Map<String, Long>> statistics = new HashMap<>();
+
+    public ManifestEntry() {
+    }
+
+    public ManifestEntry(long size, long lastModified, String contentHash) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Returns the file's partial result for an attribute, or null if it was not recorded.
+     */
+    public StatisticsAccumulator toAccumulator(String attribute) {
+        StatisticsAccumulator empty = new StatisticsAccumulator(attribute);
+        Map<String, Long> counts = statistics.get(empty.getKey());
+        if (counts == null) {
+            return null;
+        }
+        return new StatisticsAccumulator(attribute, counts, deckCount, cardCount, totalUnitPower);
+    }
+
+    /**
+     * Records the file's partial results; all accumulators have seen the same decks.
+     */
+    public void recordPartials(Iterable<StatisticsAccumulator> partials) {
+        statistics.clear();
+        for (StatisticsAccumulator partial : partials) {
+            statistics.put(partial.getKey(), partial.getStatistics());
+            deckCount = partial.getDeckCount();
+            cardCount = partial.getCardCount();
+            totalUnitPower = partial.getTotalUnitPower();
+        }
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public long getDeckCount() {
+        return deckCount;
+    }
+
+    public void setDeckCount(long deckCount) {
+        this.deckCount = deckCount;
+    }
+
+    public long getCardCount() {
+        return cardCount;
+    }
+
+    public void setCardCount(long cardCount) {
+        this.cardCount = cardCount;
+    }
+
+    public long getTotalUnitPower() {
+        return totalUnitPower;
+    }
+
+    public void setTotalUnitPower(long totalUnitPower) {
+        this.totalUnitPower = totalUnitPower;
+    }
+
+    public Map<String, Map<String, Long>> getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(Map<String, Map<String, Long>> statistics) {
+        this.statistics = statistics;
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.duskmage2009.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the {@link DeckSnapshot} of a deck directory in a hidden file inside that directory.
+ * A snapshot is only used while the fingerprint of the input files (relative path, size and
+ * modification time of every file) matches the one it was built from, so adding, removing or
+ * changing any deck file invalidates it automatically.
+ */
+public class SnapshotCache {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCache.class);
+
+    public static final String FILE_NAME = ".gwent-snapshot";
+
+    private final Path directory;
+    private final Path snapshotFile;
+
+    public SnapshotCache(Path directory) {
+        this.directory = directory;
+        this.snapshotFile = directory.resolve(FILE_NAME);
+    }
+
+    /**
+     * Returns the stored snapshot if it was built from exactly these input files, null otherwise.
+     */
+    public DeckSnapshot load(List<Path> inputFiles) throws IOException {
+        if (!Files.isRegularFile(snapshotFile)) {
+            log.info("No deck snapshot in {}", directory);
+            return null;
+        }
+
+        DeckSnapshot snapshot;
+        try {
+            snapshot = DeckSnapshot.open(snapshotFile);
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable deck snapshot {}: {}", snapshotFile, e.getMessage());
+            return null;
+        }
+
+        if (snapshot.getFingerprint() != fingerprint(inputFiles)) {
+            log.info("Deck snapshot is stale, input files have changed");
+            return null;
+        }
+
+        log.info("Loaded deck snapshot with {} decks and {} distinct cards",
+                snapshot.getDeckCount(), snapshot.getCardTableSize());
+        return snapshot;
+    }
+
+    /**
+     * Writes the builder's snapshot for these input files and returns it memory-mapped.
+     * The file is written next to the final one and moved into place, so readers never see a partial snapshot.
+     */
+    public DeckSnapshot store(DeckSnapshotBuilder builder, List<Path> inputFiles) throws IOException {
+        Path tempFile = directory.resolve(FILE_NAME + ".tmp");
+        try {
+            builder.writeTo(tempFile, fingerprint(inputFiles));
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        log.info("Stored deck snapshot with {} decks: {}", builder.getDeckCount(), snapshotFile);
+        return DeckSnapshot.open(snapshotFile);
+    }
+
+    /**
+     * Order-independent fingerprint of the input files' relative paths, sizes and modification times.
+     */
+    long fingerprint(List<Path> inputFiles) throws IOException {
+        List<String> entries = new ArrayList<>(inputFiles.size());
+        for (Path file : inputFiles) {
+            entries.add(directory.relativize(file) + "|" + Files.size(file) + "|"
+                    + Files.getLastModifiedTime(file).toMillis());
+        }
+        entries.sort(null);
+
+        MessageDigest digest = sha256();
+        for (String entry : entries) {
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+
+        long fingerprint = 0;
+        byte[] hash = digest.digest();
+        for (int i = 0; i < Long.BYTES; i++) {
+            fingerprint = (fingerprint << 8) | (hash[i] & 0xFF);
+        }
+        return fingerprint;
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    }
+}
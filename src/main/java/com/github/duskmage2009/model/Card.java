@@ -1,18 +1,27 @@
 package com.github.duskmage2009.model;
 
-import java.util.Objects;
-
-public class Card {
-    private String name;
-    private Integer provision;
-    private Integer power;
-    private CardType type;
-    private Faction faction;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
-    public Card() {
-    }
+import java.util.Objects;
 
-    public Card(String name, Integer provision, Integer power, CardType type, Faction faction) {
+/**
+ * A card as it appears in decks. Cards are immutable, since the {@link CardDictionary} shares one
+ * instance between every deck holding the card and uses it as a key.
+ */
+public final class Card {
+    private final String name;
+    private final Integer provision;
+    private final Integer power;
+    private final CardType type;
+    private final Faction faction;
+
+    @JsonCreator
+    public Card(@JsonProperty("name") String name,
+                @JsonProperty("provision") Integer provision,
+                @JsonProperty("power") Integer power,
+                @JsonProperty("type") CardType type,
+                @JsonProperty("faction") Faction faction) {
         this.name = name;
         this.provision = provision;
         this.power = power;
@@ -24,42 +33,22 @@ public class Card {
         return name;
     }
 
-    public void setName(String name) {
-        this.name = name;
-    }
-
     public Integer getProvision() {
         return provision;
     }
 
-    public void setProvision(Integer provision) {
-        this.provision = provision;
-    }
-
     public Integer getPower() {
         return power;
     }
 
-    public void setPower(Integer power) {
-        this.power = power;
-    }
-
     public CardType getType() {
         return type;
     }
 
-    public void setType(CardType type) {
-        this.type = type;
-    }
-
     public Faction getFaction() {
         return faction;
     }
 
-    public void setFaction(Faction faction) {
-        this.faction = faction;
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,45 @@
+package com.github.duskmage2009.model;
+
+import java.util.Objects;
+
+/**
+ * The copies of one card in a deck: one card instance and how many times the deck holds it.
+ */
+public class CardCopies {
+    private final Card card;
+    private final int copies;
+
+    public CardCopies(Card card, int copies) {
+        if (copies < 1) {
+            throw new IllegalArgumentException("Copies must be positive: " + copies);
+        }
+        this.card = card;
+        this.copies = copies;
+    }
+
+    public Card getCard() {
+        return card;
+    }
+
+    public int getCopies() {
+        return copies;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CardCopies that = (CardCopies) o;
+        return copies == that.copies && Objects.equals(card, that.card);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(card, copies);
+    }
+
+    @Override
+    public String toString() {
+        return copies + "x " + card;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.duskmage2009.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe flyweight dictionary of cards.
+ * Identical cards (same name, provision, power, type and faction) are canonicalized to the
+ * instance that was registered first, so a corpus keeps one Card object per distinct card
+ * no matter how many decks contain it.
+ * <p>
+ * Sharing is safe because {@link Card} is immutable.
+ */
+public class CardDictionary {
+    private final ConcurrentHashMap<Card, Card> cards = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared instance equal to the given card, registering the card if it is new.
+     */
+    public Card canonicalize(Card card) {
+        if (card == null) {
+            return null;
+        }
+        Card existing = cards.putIfAbsent(card, card);
+        return existing != null ? existing : card;
+    }
+
+    public int size() {
+        return cards.size();
+    }
+}
@@ -1,8 +1,13 @@
 package com.github.duskmage2009.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 
@@ -18,7 +23,11 @@ public class Deck {
 
     private String categories;
 
-    private List<Card> cards;
+    /**
+     * Cards stored as one entry per distinct card with its number of copies, in the order the
+     * cards first appear.
+     */
+    private List<CardCopies> cardCopies;
 
     public Deck() {
     }
@@ -29,32 +38,75 @@ public class Deck {
         this.leaderAbility = leaderAbility;
         this.provisionLimit = provisionLimit;
         this.categories = categories;
-        this.cards = cards;
+        setCards(cards);
     }
 
     public int getTotalUnitPower() {
-        if (cards == null) {
+        if (cardCopies == null) {
             return 0;
         }
-        return cards.stream()
-                .filter(card -> card.getType() == CardType.UNIT)
-                .filter(card -> card.getPower() != null)
-                .mapToInt(Card::getPower)
-                .sum();
+        int total = 0;
+        for (CardCopies entry : cardCopies) {
+            Card card = entry.getCard();
+            if (card.getType() == CardType.UNIT && card.getPower() != null) {
+                total += card.getPower() * entry.getCopies();
+            }
+        }
+        return total;
     }
 
     public int getTotalProvisionUsed() {
-        if (cards == null) {
+        if (cardCopies == null) {
+            return 0;
+        }
+        int total = 0;
+        for (CardCopies entry : cardCopies) {
+            Card card = entry.getCard();
+            if (card.getProvision() != null) {
+                total += card.getProvision() * entry.getCopies();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Number of cards in the deck, counting every copy.
+     */
+    @JsonIgnore
+    public int getCardCount() {
+        if (cardCopies == null) {
             return 0;
         }
-        return cards.stream()
-                .filter(card -> card.getProvision() != null)
-                .mapToInt(Card::getProvision)
-                .sum();
+        int count = 0;
+        for (CardCopies entry : cardCopies) {
+            count += entry.getCopies();
+        }
+        return count;
+    }
+
+    /**
+     * Replaces every card with its shared instance from the dictionary.
+     */
+    public void canonicalizeCards(CardDictionary dictionary) {
+        if (cardCopies == null) {
+            return;
+        }
+        List<CardCopies> canonical = new ArrayList<>(cardCopies.size());
+        for (CardCopies entry : cardCopies) {
+            canonical.add(new CardCopies(dictionary.canonicalize(entry.getCard()), entry.getCopies()));
+        }
+        cardCopies = canonical;
     }
 
 
     public List<String> getCategoriesList() {
+        return parseCategories(categories);
+    }
+
+    /**
+     * Splits a comma-separated categories string into trimmed, non-empty categories.
+     */
+    public static List<String> parseCategories(String categories) {
         if (categories == null || categories.trim().isEmpty()) {
             return List.of();
         }
@@ -104,12 +156,61 @@ public class Deck {
         this.categories = categories;
     }
 
+    /**
+     * Returns the cards one by one, copies included, as a read-only view over the entries.
+     * All copies of a card follow each other, in the order the cards first appeared, so
+     * {@code [A, B, A]} is returned as {@code [A, A, B]}.
+     */
     public List<Card> getCards() {
-        return cards;
+        return cardCopies == null ? null : new ExpandedCards(cardCopies, getCardCount());
     }
 
     public void setCards(List<Card> cards) {
-        this.cards = cards;
+        if (cards == null) {
+            this.cardCopies = null;
+            return;
+        }
+        List<CardCopies> entries = new ArrayList<>();
+        for (Card card : cards) {
+            addCopies(entries, card, 1);
+        }
+        this.cardCopies = entries;
+    }
+
+    @JsonIgnore
+    public List<CardCopies> getCardCopies() {
+        return cardCopies == null ? null : Collections.unmodifiableList(cardCopies);
+    }
+
+    /**
+     * Sets the cards from entries of copies; the copies of equal cards are added up into one entry.
+     */
+    @JsonIgnore
+    public void setCardCopies(List<CardCopies> cardCopies) {
+        if (cardCopies == null) {
+            this.cardCopies = null;
+            return;
+        }
+        List<CardCopies> entries = new ArrayList<>(cardCopies.size());
+        for (CardCopies entry : cardCopies) {
+            addCopies(entries, entry.getCard(), entry.getCopies());
+        }
+        this.cardCopies = entries;
+    }
+
+    /**
+     * Adds copies of a card to its entry, or appends a new entry for a card not seen yet.
+     * Decks hold a few dozen distinct cards, so a linear scan beats hashing every card.
+     */
+    private static void addCopies(List<CardCopies> entries, Card card, int copies) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            CardCopies entry = entries.get(i);
+            if (Objects.equals(entry.getCard(), card)) {
+                entries.set(i, new CardCopies(entry.getCard(), entry.getCopies() + copies));
+                return;
+            }
+        }
+        entries.add(new CardCopies(card, copies));
     }
 
     @Override
@@ -135,9 +236,61 @@ public class Deck {
                 ", leaderAbility='" + leaderAbility + '\'' +
                 ", provisionLimit=" + provisionLimit +
                 ", categories='" + categories + '\'' +
-                ", cards=" + (cards != null ? cards.size() : 0) +
+                ", cards=" + getCardCount() +
                 ", totalUnitPower=" + getTotalUnitPower() +
                 ", provisionUsed=" + getTotalProvisionUsed() +
                 '}';
     }
-}
\ No newline at end of file
+
+    private static final class ExpandedCards extends AbstractList<Card> {
+        private final List<CardCopies> runs;
+        private final int size;
+
+        ExpandedCards(List<CardCopies> runs, int size) {
+            this.runs = runs;
+            this.size = size;
+        }
+
+        @Override
+        public Card get(int index) {
+            Objects.checkIndex(index, size);
+            int remaining = index;
+            for (CardCopies entry : runs) {
+                if (remaining < entry.getCopies()) {
+                    return entry.getCard();
+                }
+                remaining -= entry.getCopies();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Card> iterator() {
+            return new Iterator<>() {
+                private final Iterator<CardCopies> entries = runs.iterator();
+                private CardCopies current;
+                private int left;
+
+                @Override
+                public boolean hasNext() {
+                    return left > 0 || entries.hasNext();
+                }
+
+                @Override
+                public Card next() {
+                    if (left == 0) {
+                        current = entries.next();
+                        left = current.getCopies();
+                    }
+                    left--;
+                    return current.getCard();
+                }
+            };
+        }
+    }
+}
@@ -12,6 +12,10 @@ import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -19,30 +23,114 @@ public class XmlStatisticsWriter {
     private static final Logger log = LoggerFactory.getLogger(XmlStatisticsWriter.class);
 
 
-    public void writeStatistics(Map<String, Integer> statistics, String attribute, String outputDirectory)
+    public void writeStatistics(Map<String, Long> statistics, String attribute, String outputDirectory)
             throws Exception {
+        writeStatistics(statistics, null, 0, attribute, outputDirectory);
+    }
+
+    /**
+     * Writes approximate statistics: every item also carries the most its count may exceed the true
+     * count, and the root the most a value that is not listed may have occurred.
+     *
+     * @param errorBounds error of every value's count, or null if the counts are exact
+     */
+    public void writeStatistics(Map<String, Long> statistics, Map<String, Long> errorBounds, long errorBound,
+                                String attribute, String outputDirectory) throws Exception {
         String filename = String.format("statistics_by_%s.xml", attribute.toLowerCase());
         File outputFile = new File(outputDirectory, filename);
 
         log.info("Writing statistics to file: {}", outputFile.getAbsolutePath());
 
-        Document doc = createXmlDocument(statistics);
+        Document doc = createXmlDocument(statistics, errorBounds, errorBound);
         writeDocumentToFile(doc, outputFile);
 
         log.info("Statistics successfully written to: {}", outputFile.getAbsolutePath());
         System.out.println("Statistics saved to: " + outputFile.getAbsolutePath());
     }
 
-    private Document createXmlDocument(Map<String, Integer> statistics)
-            throws ParserConfigurationException {
+    /**
+     * Writes the cells of a cube nested by dimension: a {@code group} per value of every dimension
+     * but the last, with the total count below it, and an {@code item} per value of the last one.
+     *
+     * @param cells counts keyed by the values of every dimension, in dimension order
+     */
+    public void writeCube(List<String> dimensions, Map<List<String>, Long> cells, String outputDirectory)
+            throws Exception {
+        String filename = String.format("statistics_by_%s.xml", String.join("_", dimensions).toLowerCase());
+        File outputFile = new File(outputDirectory, filename);
+
+        log.info("Writing cube to file: {}", outputFile.getAbsolutePath());
+
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document doc = builder.newDocument();
+        Element root = doc.createElement("statistics");
+        root.setAttribute("dimensions", String.join(",", dimensions));
+        doc.appendChild(root);
+
+        Group tree = new Group();
+        cells.forEach((values, count) -> tree.add(values, 0, count));
+        appendGroups(doc, root, tree, dimensions, 0);
+
+        writeDocumentToFile(doc, outputFile);
+
+        log.info("Cube successfully written to: {}", outputFile.getAbsolutePath());
+        System.out.println("Statistics saved to: " + outputFile.getAbsolutePath());
+    }
+
+    private void appendGroups(Document doc, Element parent, Group group, List<String> dimensions, int depth) {
+        List<Map.Entry<String, Group>> children = new ArrayList<>(group.children.entrySet());
+        children.sort(Comparator.comparingLong((Map.Entry<String, Group> child) -> child.getValue().count)
+                .reversed().thenComparing(Map.Entry::getKey));
+        for (Map.Entry<String, Group> child : children) {
+            Element count = doc.createElement("count");
+            count.setTextContent(Long.toString(child.getValue().count));
+            if (depth == dimensions.size() - 1) {
+                Element item = doc.createElement("item");
+                Element value = doc.createElement("value");
+                value.setTextContent(child.getKey());
+                item.appendChild(value);
+                item.appendChild(count);
+                parent.appendChild(item);
+            } else {
+                Element element = doc.createElement("group");
+                element.setAttribute("dimension", dimensions.get(depth));
+                element.setAttribute("value", child.getKey());
+                element.appendChild(count);
+                appendGroups(doc, element, child.getValue(), dimensions, depth + 1);
+                parent.appendChild(element);
+            }
+        }
+    }
+
+    /**
+     * Cells sharing the values of the leading dimensions, with their total count.
+     */
+    private static final class Group {
+        private final Map<String, Group> children = new HashMap<>();
+        private long count;
+
+        void add(List<String> values, int depth, long cellCount) {
+            count += cellCount;
+            if (depth < values.size()) {
+                children.computeIfAbsent(values.get(depth), value -> new Group()).add(values, depth + 1, cellCount);
+            }
+        }
+    }
+
+    private Document createXmlDocument(Map<String, Long> statistics, Map<String, Long> errorBounds,
+                                       long errorBound) throws ParserConfigurationException {
         DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
         DocumentBuilder builder = factory.newDocumentBuilder();
         Document doc = builder.newDocument();
 
         Element root = doc.createElement("statistics");
         doc.appendChild(root);
+        if (errorBounds != null) {
+            root.setAttribute("approximate", "true");
+            root.setAttribute("unlistedMaxCount", Long.toString(errorBound));
+        }
 
-        for (Map.Entry<String, Integer> entry : statistics.entrySet()) {
+        for (Map.Entry<String, Long> entry : statistics.entrySet()) {
             Element item = doc.createElement("item");
 
             Element value = doc.createElement("value");
@@ -53,6 +141,12 @@ public class XmlStatisticsWriter {
             count.setTextContent(entry.getValue().toString());
             item.appendChild(count);
 
+            if (errorBounds != null) {
+                Element error = doc.createElement("error");
+                error.setTextContent(errorBounds.getOrDefault(entry.getKey(), 0L).toString());
+                item.appendChild(error);
+            }
+
             root.appendChild(item);
         }
 
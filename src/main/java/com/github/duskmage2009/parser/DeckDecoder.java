@@ -0,0 +1,213 @@
+package com.github.duskmage2009.parser;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.CardDictionary;
+import com.github.duskmage2009.model.CardType;
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Token-level decoder for {@link Deck} and {@link Card} objects.
+ * Recognizes the known field names directly (Jackson canonicalizes them, so no strings
+ * are created for names) and resolves faction and type values through {@link EnumLookup}
+ * instead of going through bean introspection and the enums' {@code fromString} scans.
+ * Produces the same objects as the databind path, including its scalar coercions.
+ * Cards are canonicalized through the shared {@link CardDictionary} as they are read.
+ * <p>
+ * Holds no per-parse state and is safe to share between threads.
+ */
+class DeckDecoder {
+    private static final EnumLookup<Faction> FACTIONS =
+            new EnumLookup<>(Faction.values(), Faction::getDisplayName);
+    private static final EnumLookup<CardType> CARD_TYPES =
+            new EnumLookup<>(CardType.values(), CardType::getDisplayName);
+
+    private final CardDictionary cardDictionary;
+
+    DeckDecoder(CardDictionary cardDictionary) {
+        this.cardDictionary = cardDictionary;
+    }
+
+    /**
+     * Reads one deck. The parser must be positioned on the deck's START_OBJECT, or on its
+     * first FIELD_NAME (END_OBJECT for an empty object) when the caller already peeked into it.
+     * The parser is left on the deck's END_OBJECT.
+     */
+    Deck readDeck(JsonParser p) throws IOException {
+        String field;
+        if (p.currentToken() == JsonToken.FIELD_NAME) {
+            field = p.currentName();
+        } else if (p.currentToken() == JsonToken.END_OBJECT) {
+            field = null;
+        } else {
+            expect(p, JsonToken.START_OBJECT, "Deck");
+            field = p.nextFieldName();
+        }
+
+        String name = null;
+        Faction faction = null;
+        String leaderAbility = null;
+        Integer provisionLimit = null;
+        String categories = null;
+        List<CardCopies> cards = null;
+
+        for (; field != null; field = p.nextFieldName()) {
+            p.nextToken();
+            switch (field) {
+                case "name" -> name = readString(p);
+                case "faction" -> faction = readFaction(p);
+                case "leaderAbility" -> leaderAbility = readString(p);
+                case "provisionLimit" -> provisionLimit = readInteger(p);
+                case "categories" -> categories = readString(p);
+                case "cards" -> cards = readCards(p);
+                default -> throw unknownField(p, field, "Deck");
+            }
+        }
+        expect(p, JsonToken.END_OBJECT, "Deck");
+
+        Deck deck = new Deck(name, faction, leaderAbility, provisionLimit, categories, null);
+        deck.setCardCopies(cards);
+        return deck;
+    }
+
+    /**
+     * Reads the cards array straight into entries of canonical cards. Consecutive copies are counted
+     * here; {@link Deck#setCardCopies} adds up the copies of a card that appears more than once.
+     */
+    private List<CardCopies> readCards(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.START_ARRAY, "cards");
+
+        List<CardCopies> runs = new ArrayList<>();
+        Card run = null;
+        int copies = 0;
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            Card card = token == JsonToken.VALUE_NULL ? null : readCard(p);
+            if (copies > 0 && Objects.equals(card, run)) {
+                copies++;
+                continue;
+            }
+            if (copies > 0) {
+                runs.add(new CardCopies(cardDictionary.canonicalize(run), copies));
+            }
+            run = card;
+            copies = 1;
+        }
+        if (copies > 0) {
+            runs.add(new CardCopies(cardDictionary.canonicalize(run), copies));
+        }
+        return runs;
+    }
+
+    private Card readCard(JsonParser p) throws IOException {
+        expect(p, JsonToken.START_OBJECT, "Card");
+
+        String name = null;
+        Integer provision = null;
+        Integer power = null;
+        CardType type = null;
+        Faction faction = null;
+
+        String field;
+        while ((field = p.nextFieldName()) != null) {
+            p.nextToken();
+            switch (field) {
+                case "name" -> name = readString(p);
+                case "provision" -> provision = readInteger(p);
+                case "power" -> power = readInteger(p);
+                case "type" -> type = readCardType(p);
+                case "faction" -> faction = readFaction(p);
+                default -> throw unknownField(p, field, "Card");
+            }
+        }
+        expect(p, JsonToken.END_OBJECT, "Card");
+
+        return new Card(name, provision, power, type, faction);
+    }
+
+    private static String readString(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != null && token.isScalarValue()) {
+            return p.getText();
+        }
+        throw new JsonParseException(p, "Expected a string value but got " + token);
+    }
+
+    private static Integer readInteger(JsonParser p) throws IOException {
+        switch (p.currentToken()) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_NUMBER_INT:
+                return p.getIntValue();
+            case VALUE_NUMBER_FLOAT:
+                // Like databind: truncated towards zero as long as it fits in an int
+                double value = p.getDoubleValue();
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw new JsonParseException(p, "Numeric value (" + p.getText() + ") out of range of int");
+                }
+                return (int) value;
+            case VALUE_STRING:
+                String text = p.getText().trim();
+                if (text.isEmpty()) {
+                    return null;
+                }
+                try {
+                    return Integer.parseInt(text);
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(p, "Cannot convert \"" + text + "\" to an integer", e);
+                }
+            default:
+                throw new JsonParseException(p, "Expected an integer value but got " + p.currentToken());
+        }
+    }
+
+    private static Faction readFaction(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.VALUE_STRING, "faction");
+        Faction faction = FACTIONS.find(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        if (faction == null) {
+            throw new JsonParseException(p, "Unknown faction: " + p.getText());
+        }
+        return faction;
+    }
+
+    private static CardType readCardType(JsonParser p) throws IOException {
+        if (p.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        expect(p, JsonToken.VALUE_STRING, "type");
+        CardType type = CARD_TYPES.find(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+        if (type == null) {
+            throw new JsonParseException(p, "Unknown card type: " + p.getText());
+        }
+        return type;
+    }
+
+    private static void expect(JsonParser p, JsonToken expected, String what) throws JsonParseException {
+        if (p.currentToken() != expected) {
+            throw new JsonParseException(p,
+                    "Expected " + expected + " for " + what + " but got " + p.currentToken());
+        }
+    }
+
+    private static JsonParseException unknownField(JsonParser p, String field, String type) {
+        return new JsonParseException(p, "Unrecognized field \"" + field + "\" in " + type);
+    }
+}
@@ -1,27 +1,78 @@
 package com.github.duskmage2009.parser;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.duskmage2009.model.CardDictionary;
 import com.github.duskmage2009.model.Deck;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Parser for JSON files containing Gwent deck data.
  * Uses TRUE streaming approach to avoid loading large files into memory.
+ * Decks are decoded by the token-level {@link DeckDecoder} by default;
+ * {@link DecodingMode#DATABIND} keeps the reflective ObjectMapper path.
+ * In both modes identical cards are shared through the parser's {@link CardDictionary}.
  */
 public class DeckParser {
     private static final Logger log = LoggerFactory.getLogger(DeckParser.class);
+
+    /**
+     * Files of at least this many bytes are memory-mapped instead of read through a stream.
+     */
+    public static final long DEFAULT_MMAP_THRESHOLD = 16L * 1024 * 1024;
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> DECK_FIELDS =
+            Set.of("name", "faction", "leaderAbility", "provisionLimit", "categories", "cards");
+    private static final String DECKS_FIELD = "decks";
+
     private final ObjectMapper objectMapper;
+    private final ObjectReader deckReader;
+    private final DecodingMode decodingMode;
+    private final DeckDecoder decoder;
+    private final CardDictionary cardDictionary;
+    private final long mmapThreshold;
 
     public DeckParser() {
+        this(DecodingMode.TOKEN);
+    }
+
+    public DeckParser(DecodingMode decodingMode) {
+        this(decodingMode, DEFAULT_MMAP_THRESHOLD);
+    }
+
+    /**
+     * @param decodingMode  how decks are decoded from the token stream
+     * @param mmapThreshold minimum file size in bytes for memory-mapped input;
+     *                      {@code Long.MAX_VALUE} always uses buffered stream reads
+     */
+    public DeckParser(DecodingMode decodingMode, long mmapThreshold) {
         this.objectMapper = new ObjectMapper();
+        this.deckReader = objectMapper.readerFor(Deck.class);
+        this.decodingMode = decodingMode;
+        this.cardDictionary = new CardDictionary();
+        this.decoder = new DeckDecoder(cardDictionary);
+        this.mmapThreshold = mmapThreshold;
     }
 
     /**
@@ -33,56 +84,313 @@ public class DeckParser {
      * @throws IOException if file reading or parsing fails
      */
     public List<Deck> parse(Path filePath) throws IOException {
-        log.debug("Parsing deck(s) from file using streaming: {}", filePath);
-
         List<Deck> decks = new ArrayList<>();
+        parse(filePath, decks::add);
+        return decks;
+    }
+
+    /**
+     * Parses a JSON file and hands every deck to the consumer as soon as it is read,
+     * without collecting them. Handles a single deck object, an array of decks and
+     * deck arrays nested in a wrapper object such as {@code {"decks": [...]}}.
+     * The file is opened once and read by a single parser in every case.
+     *
+     * @param filePath     path to JSON file
+     * @param deckConsumer receives each parsed deck
+     * @return number of decks passed to the consumer
+     * @throws IOException if file reading or parsing fails
+     */
+    public int parse(Path filePath, Consumer<Deck> deckConsumer) throws IOException {
+        return parse(FileSlice.wholeFile(filePath), deckConsumer);
+    }
+
+    /**
+     * Parses one slice of a file. Slices of JSON Lines files hold whole lines, one deck object
+     * per line; slices of other files hold consecutive elements of the top-level deck array, as
+     * cut by {@link JsonArraySplitter}. Slices are independent of each other, so the slices of one
+     * file can be parsed concurrently. A whole-file slice is parsed like {@link #parse(Path, Consumer)}.
+     *
+     * @param slice        file and byte range to parse
+     * @param deckConsumer receives each parsed deck
+     * @return number of decks passed to the consumer
+     * @throws IOException if file reading or parsing fails
+     */
+    public int parse(FileSlice slice, Consumer<Deck> deckConsumer) throws IOException {
+        return parse(slice, openRawInput(slice), deckConsumer);
+    }
+
+    /**
+     * Parses a slice whose raw bytes, as returned by {@link #readBytes(FileSlice)}, were read
+     * beforehand, so that waiting for storage and parsing can be scheduled separately.
+     */
+    public int parse(FileSlice slice, byte[] content, Consumer<Deck> deckConsumer) throws IOException {
+        return parse(slice, content, content.length, deckConsumer);
+    }
+
+    /**
+     * Parses a slice whose raw bytes are the first {@code length} bytes of a buffer,
+     * as filled by {@link #readBytes(FileSlice, byte[])}.
+     */
+    public int parse(FileSlice slice, byte[] buffer, int length, Consumer<Deck> deckConsumer) throws IOException {
+        return parse(slice, new ByteArrayInputStream(buffer, 0, length), deckConsumer);
+    }
+
+    /**
+     * Reads the raw (still compressed, for gzip files) bytes of a slice into memory.
+     */
+    public byte[] readBytes(FileSlice slice) throws IOException {
+        try (InputStream input = openRawInput(slice)) {
+            return input.readAllBytes();
+        }
+    }
+
+    /**
+     * Reads the raw bytes of a slice into the start of a buffer that is reused across slices.
+     *
+     * @return the number of bytes read, or -1 if the slice does not fit into the buffer
+     */
+    public int readBytes(FileSlice slice, byte[] buffer) throws IOException {
+        try (InputStream input = openRawInput(slice)) {
+            int length = input.readNBytes(buffer, 0, buffer.length);
+            return length == buffer.length && input.read() >= 0 ? -1 : length;
+        }
+    }
+
+    private int parse(FileSlice slice, InputStream rawInput, Consumer<Deck> deckConsumer) throws IOException {
+        InputStream input = decompress(slice.getFile(), rawInput);
+        if (!isJsonLines(slice.getFile())) {
+            if (slice.isWholeFile()) {
+                return parseFile(slice.getFile(), input, deckConsumer);
+            }
+            return parseArraySlice(slice, input, deckConsumer);
+        }
+
+        log.debug("Parsing JSON Lines slice: {}", slice);
+
+        try (JsonParser jsonParser = objectMapper.getFactory().createParser(input)) {
+            int count = 0;
+
+            while (jsonParser.nextToken() != null) {
+                Deck deck = readDeck(jsonParser);
+                deckConsumer.accept(deck);
+                count++;
+            }
+
+            log.debug("Successfully parsed {} decks from JSON Lines slice {}", count, slice);
+            return count;
+        } catch (IOException e) {
+            log.error("Failed to parse decks from slice: {}", slice, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Parses a whole file that holds a single deck object, an array of decks or a wrapper object.
+     */
+    private int parseFile(Path filePath, InputStream input, Consumer<Deck> deckConsumer) throws IOException {
+        log.debug("Parsing deck(s) from file using streaming: {}", filePath);
 
-        try (JsonParser jsonParser = objectMapper.getFactory().createParser(filePath.toFile())) {
-            // Peek at first token to determine if it's an array or single object
+        try (JsonParser jsonParser = objectMapper.getFactory().createParser(input)) {
+            // Peek at first token to determine if it's an array or an object
             jsonParser.nextToken();
 
             if (jsonParser.isExpectedStartArrayToken()) {
-                // File contains an array of decks - use streaming iterator
-                log.debug("Detected array format, using streaming iterator");
-                decks = parseArrayStreaming(filePath);
-            } else {
-                // File contains a single deck object
-                log.debug("Detected single object format");
-                Deck deck = objectMapper.readValue(jsonParser, Deck.class);
-                decks.add(deck);
-                log.info("Successfully parsed single deck: {} with {} cards",
-                        deck.getName(), deck.getCards().size());
+                log.debug("Detected array format");
+                return parseArray(jsonParser, deckConsumer);
+            }
+
+            JsonParser deckParser = jsonParser;
+            if (jsonParser.isExpectedStartObjectToken()) {
+                // A deck has only its own fields, so the first other field makes it a wrapper object.
+                // The fields before it are kept aside in case the object turns out to be a deck.
+                TokenBuffer deckFields = new TokenBuffer(jsonParser);
+                deckFields.writeStartObject();
+                String field;
+                while ((field = jsonParser.nextFieldName()) != null && DECK_FIELDS.contains(field)) {
+                    deckFields.writeFieldName(field);
+                    jsonParser.nextToken();
+                    deckFields.copyCurrentStructure(jsonParser);
+                }
+                if (field != null) {
+                    log.debug("Detected wrapper object format");
+                    return parseWrapper(jsonParser, deckConsumer);
+                }
+                deckFields.writeEndObject();
+                deckParser = deckFields.asParser(jsonParser);
+                deckParser.nextToken();
             }
+
+            log.debug("Detected single object format");
+            Deck deck = readDeck(deckParser);
+            deckConsumer.accept(deck);
+            log.debug("Successfully parsed single deck: {} with {} cards",
+                    deck.getName(), deck.getCardCount());
+            return 1;
         } catch (IOException e) {
             log.error("Failed to parse deck from file: {}", filePath, e);
             throw e;
         }
+    }
 
-        return decks;
+    /**
+     * Parses a run of top-level array elements by presenting it to the parser as an array of its own.
+     */
+    private int parseArraySlice(FileSlice slice, InputStream input, Consumer<Deck> deckConsumer) throws IOException {
+        log.debug("Parsing array slice: {}", slice);
+
+        InputStream elements = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(new byte[]{'['}),
+                input,
+                new ByteArrayInputStream(new byte[]{']'}))));
+
+        try (JsonParser jsonParser = objectMapper.getFactory().createParser(elements)) {
+            jsonParser.nextToken();
+            return parseArray(jsonParser, deckConsumer);
+        } catch (IOException e) {
+            log.error("Failed to parse decks from slice: {}", slice, e);
+            throw e;
+        }
     }
 
     /**
-     * Parses array of decks using MappingIterator for true streaming.
-     * This approach never loads the entire file into memory.
+     * Whether the file holds one deck object per line ({@code .jsonl} or {@code .ndjson}).
      */
-    private List<Deck> parseArrayStreaming(Path filePath) throws IOException {
-        List<Deck> decks = new ArrayList<>();
+    public static boolean isJsonLines(Path filePath) {
+        String name = filePath.getFileName().toString().toLowerCase();
+        if (name.endsWith(GZIP_SUFFIX)) {
+            name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+        }
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    /**
+     * Whether the file is gzip-compressed ({@code .gz}); such files are decompressed while
+     * being parsed and can only be read as a whole.
+     */
+    public static boolean isGzip(Path filePath) {
+        return filePath.getFileName().toString().toLowerCase().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Streams the decks of the array the parser is positioned on, one element at a time.
+     * Never loads the entire array into memory.
+     */
+    private int parseArray(JsonParser jsonParser, Consumer<Deck> deckConsumer) throws IOException {
+        return parseElements(jsonParser, jsonParser.nextToken(), deckConsumer);
+    }
+
+    /**
+     * Streams the decks of an array from the element the parser is positioned on to the end of the array.
+     */
+    private int parseElements(JsonParser jsonParser, JsonToken token, Consumer<Deck> deckConsumer) throws IOException {
+        int count = 0;
+
+        for (; token != JsonToken.END_ARRAY; token = jsonParser.nextToken()) {
+            Deck deck = readDeck(jsonParser);
+            deckConsumer.accept(deck);
+            count++;
+            log.debug("Streamed deck: {} with {} cards",
+                    deck.getName(), deck.getCardCount());
+        }
+
+        log.debug("Successfully streamed {} decks from file", count);
+        return count;
+    }
 
-        try (MappingIterator<Deck> iterator = objectMapper
-                .readerFor(Deck.class)
-                .readValues(filePath.toFile())) {
+    /**
+     * Streams the decks of a wrapper object. Decks are read from the {@code decks} field and from
+     * any other array whose first element is an object; other fields (version, export date, tags,
+     * ...) and fields named like deck fields are skipped. The parser is positioned on the first
+     * field name that is not a deck field; the deck-named fields before it were already read.
+     */
+    private int parseWrapper(JsonParser jsonParser, Consumer<Deck> deckConsumer) throws IOException {
+        int count = 0;
+        boolean foundArray = false;
 
-            while (iterator.hasNext()) {
-                Deck deck = iterator.next();
-                decks.add(deck);
-                log.debug("Streamed deck: {} with {} cards",
-                        deck.getName(), deck.getCards().size());
+        for (String field = jsonParser.currentName(); field != null; field = jsonParser.nextFieldName()) {
+            if (jsonParser.nextToken() != JsonToken.START_ARRAY || DECK_FIELDS.contains(field)) {
+                jsonParser.skipChildren();
+                continue;
+            }
+            JsonToken first = jsonParser.nextToken();
+            if (first == JsonToken.START_OBJECT || DECKS_FIELD.equals(field)) {
+                log.debug("Reading decks from wrapper field: {}", field);
+                count += parseElements(jsonParser, first, deckConsumer);
+                foundArray = true;
+            } else {
+                for (JsonToken token = first; token != JsonToken.END_ARRAY; token = jsonParser.nextToken()) {
+                    jsonParser.skipChildren();
+                }
             }
+        }
 
-            log.info("Successfully streamed {} decks from file", decks.size());
+        if (!foundArray) {
+            throw new JsonParseException(jsonParser, "Object is neither a deck nor contains a deck array");
         }
+        return count;
+    }
 
-        return decks;
+    private JsonParser createParser(Path filePath) throws IOException {
+        return objectMapper.getFactory().createParser(openInput(filePath));
+    }
+
+    /**
+     * Opens the file for reading, memory-mapping it when it reaches the size threshold,
+     * and decompresses gzip files on the fly.
+     */
+    private InputStream openInput(Path filePath) throws IOException {
+        return decompress(filePath, openRawInput(FileSlice.wholeFile(filePath)));
+    }
+
+    /**
+     * Opens the bytes of a slice as stored on disk, memory-mapping ranges that reach the size threshold.
+     * Every read of the parser goes through here, so subclasses can wrap the storage access.
+     */
+    protected InputStream openRawInput(FileSlice slice) throws IOException {
+        Path filePath = slice.getFile();
+        if (slice.isWholeFile()) {
+            long size = Files.size(filePath);
+            if (size >= mmapThreshold) {
+                log.debug("Memory-mapping {} ({} bytes)", filePath, size);
+                return new MappedFileInputStream(filePath);
+            }
+            return Files.newInputStream(filePath);
+        }
+        long end = slice.getEnd() < 0 ? Files.size(filePath) : slice.getEnd();
+        if (end - slice.getStart() >= mmapThreshold) {
+            return new MappedFileInputStream(filePath, slice.getStart(), end,
+                    MappedFileInputStream.MAX_SEGMENT_SIZE);
+        }
+        return new FileRangeInputStream(filePath, slice.getStart(), end);
+    }
+
+    private static InputStream decompress(Path filePath, InputStream input) throws IOException {
+        if (isGzip(filePath)) {
+            // Inflate on the fly straight into the parser; nothing is written to disk
+            try {
+                return new GZIPInputStream(input, GZIP_BUFFER_SIZE);
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+        return input;
+    }
+
+    private Deck readDeck(JsonParser jsonParser) throws IOException {
+        if (decodingMode == DecodingMode.TOKEN) {
+            return decoder.readDeck(jsonParser);
+        }
+        Deck deck = deckReader.readValue(jsonParser);
+        deck.canonicalizeCards(cardDictionary);
+        return deck;
+    }
+
+    /**
+     * Dictionary shared by all decks this parser produced; identical cards are one instance.
+     */
+    public CardDictionary getCardDictionary() {
+        return cardDictionary;
     }
 
     /**
@@ -92,10 +400,11 @@ public class DeckParser {
     public Deck parseSingle(Path filePath) throws IOException {
         log.debug("Parsing single deck from file using streaming: {}", filePath);
 
-        try (JsonParser jsonParser = objectMapper.getFactory().createParser(filePath.toFile())) {
-            Deck deck = objectMapper.readValue(jsonParser, Deck.class);
-            log.info("Successfully parsed deck: {} with {} cards",
-                    deck.getName(), deck.getCards().size());
+        try (JsonParser jsonParser = createParser(filePath)) {
+            jsonParser.nextToken();
+            Deck deck = readDeck(jsonParser);
+            log.debug("Successfully parsed deck: {} with {} cards",
+                    deck.getName(), deck.getCardCount());
             return deck;
         } catch (IOException e) {
             log.error("Failed to parse deck from file: {}", filePath, e);
@@ -0,0 +1,16 @@
+package com.github.duskmage2009.parser;
+
+/**
+ * How {@link DeckParser} turns JSON tokens into {@code Deck} and {@code Card} objects.
+ */
+public enum DecodingMode {
+    /**
+     * Jackson databind: bean setters and the {@code @JsonCreator} factories of the enums.
+     */
+    DATABIND,
+
+    /**
+     * Hand-written decoder working directly on the token stream, see {@link DeckDecoder}.
+     */
+    TOKEN
+}
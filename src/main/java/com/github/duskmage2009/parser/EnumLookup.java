@@ -0,0 +1,91 @@
+package com.github.duskmage2009.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Precomputed case-insensitive table from enum names and display names to constants.
+ * Matches directly against the parser's character buffer, so resolving a value
+ * allocates nothing and only compares candidates of the same length.
+ */
+final class EnumLookup<E extends Enum<E>> {
+    private final char[][][] namesByLength;
+    private final Object[][] valuesByLength;
+
+    EnumLookup(E[] values, Function<E, String> displayName) {
+        List<List<char[]>> names = new ArrayList<>();
+        List<List<E>> constants = new ArrayList<>();
+
+        for (E value : values) {
+            for (String name : new String[]{displayName.apply(value), value.name()}) {
+                while (names.size() <= name.length()) {
+                    names.add(new ArrayList<>());
+                    constants.add(new ArrayList<>());
+                }
+                char[] folded = fold(name);
+                if (indexOf(names.get(name.length()), folded) < 0) {
+                    names.get(name.length()).add(folded);
+                    constants.get(name.length()).add(value);
+                }
+            }
+        }
+
+        namesByLength = new char[names.size()][][];
+        valuesByLength = new Object[names.size()][];
+        for (int length = 0; length < names.size(); length++) {
+            namesByLength[length] = names.get(length).toArray(new char[0][]);
+            valuesByLength[length] = constants.get(length).toArray();
+        }
+    }
+
+    /**
+     * Returns the constant whose name or display name equals the given characters
+     * ignoring case, or null when there is none.
+     */
+    @SuppressWarnings("unchecked")
+    E find(char[] text, int offset, int length) {
+        if (length >= namesByLength.length) {
+            return null;
+        }
+        char[][] candidates = namesByLength[length];
+        for (int i = 0; i < candidates.length; i++) {
+            if (matches(candidates[i], text, offset)) {
+                return (E) valuesByLength[length][i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(char[] folded, char[] text, int offset) {
+        for (int i = 0; i < folded.length; i++) {
+            if (fold(text[offset + i]) != folded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(List<char[]> names, char[] name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (Arrays.equals(names.get(i), name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char[] fold(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = fold(chars[i]);
+        }
+        return chars;
+    }
+
+    // Same folding as String.equalsIgnoreCase
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.duskmage2009.parser;
+
+import java.nio.file.Path;
+
+/**
+ * A byte range {@code [start, end)} of an input file that can be parsed on its own.
+ * An end of -1 stands for the end of the file.
+ */
+public class FileSlice {
+    private final Path file;
+    private final long start;
+    private final long end;
+
+    public FileSlice(Path file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+
+    public static FileSlice wholeFile(Path file) {
+        return new FileSlice(file, 0, -1);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean isWholeFile() {
+        return start == 0 && end < 0;
+    }
+
+    @Override
+    public String toString() {
+        return isWholeFile() ? file.toString() : file + "[" + start + ".." + end + ")";
+    }
+}
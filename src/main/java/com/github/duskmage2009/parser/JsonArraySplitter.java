@@ -0,0 +1,95 @@
+package com.github.duskmage2009.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Splits a file holding one top-level JSON array into slices of consecutive elements of roughly
+ * the target size. Cuts are made only at commas directly inside the top-level array, tracking
+ * nesting depth, strings and escapes, so every slice wrapped in brackets is a valid array.
+ * <p>
+ * The scan is a single pass over the raw bytes without tokenizing, and slices are handed out as
+ * soon as their end is found, so workers can start parsing while the rest of the file is scanned.
+ */
+public class JsonArraySplitter {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Emits the slices of the file's top-level array in order.
+     *
+     * @return false, without emitting anything, when the file does not start with an array
+     */
+    public boolean split(Path file, long targetSliceSize, Consumer<FileSlice> sliceConsumer) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = 0;
+            long sliceStart = -1;
+            int depth = 0;
+            boolean inString = false;
+            boolean escaped = false;
+
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+
+                    if (sliceStart < 0) {
+                        if (b == '[') {
+                            sliceStart = position + 1;
+                            depth = 1;
+                        } else if (!isLeadingWhitespace(b)) {
+                            return false;
+                        }
+                        continue;
+                    }
+
+                    if (inString) {
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                        continue;
+                    }
+
+                    switch (b) {
+                        case '"' -> inString = true;
+                        case '{', '[' -> depth++;
+                        case '}', ']' -> {
+                            if (--depth == 0) {
+                                sliceConsumer.accept(new FileSlice(file, sliceStart, position));
+                                return true;
+                            }
+                        }
+                        case ',' -> {
+                            if (depth == 1 && position - sliceStart >= targetSliceSize) {
+                                sliceConsumer.accept(new FileSlice(file, sliceStart, position));
+                                sliceStart = position + 1;
+                            }
+                        }
+                        default -> {
+                        }
+                    }
+                }
+            }
+
+            if (sliceStart < 0) {
+                return false;
+            }
+            // Unterminated array: the last slice fails to parse and reports the error
+            sliceConsumer.accept(new FileSlice(file, sliceStart, position));
+            return true;
+        }
+    }
+
+    // Whitespace and the UTF-8 byte order mark may precede the array
+    private static boolean isLeadingWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t'
+                || b == (byte) 0xEF || b == (byte) 0xBB || b == (byte) 0xBF;
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.duskmage2009.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits a JSON Lines file into slices of roughly the target size that start and end on
+ * line boundaries, so every slice holds whole records and can be parsed independently.
+ * Only the few bytes after each tentative cut are read to find the next newline.
+ */
+public class JsonLinesSplitter {
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    public List<FileSlice> split(Path file, long targetSliceSize) throws IOException {
+        List<FileSlice> slices = new ArrayList<>();
+        split(file, targetSliceSize, slices::add);
+        return slices;
+    }
+
+    /**
+     * Emits the slices of the file in order, each as soon as its end is known.
+     */
+    public void split(Path file, long targetSliceSize, Consumer<FileSlice> sliceConsumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+            long start = 0;
+            while (start < size) {
+                long end = start + targetSliceSize >= size
+                        ? size
+                        : nextLineStart(channel, start + targetSliceSize, size, buffer);
+                sliceConsumer.accept(new FileSlice(file, start, end));
+                start = end;
+            }
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer buffer)
+            throws IOException {
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
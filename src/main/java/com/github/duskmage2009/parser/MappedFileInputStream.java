@@ -0,0 +1,109 @@
+package com.github.duskmage2009.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * InputStream over a memory-mapped file. Reads copy straight from the mapping into the
+ * caller's buffer, without read system calls or an intermediate stream buffer.
+ * Files larger than one mapping (2 GB) are mapped segment by segment as reading advances.
+ * <p>
+ * The JDK has no public way to unmap a buffer; a segment is released by the garbage
+ * collector once the stream no longer references it.
+ */
+class MappedFileInputStream extends InputStream {
+    static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final long end;
+    private final long segmentSize;
+    private long segmentStart;
+    private MappedByteBuffer segment;
+
+    MappedFileInputStream(Path file) throws IOException {
+        this(file, 0, -1, MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Maps the byte range {@code [start, end)} of the file; a negative end means end of file.
+     */
+    MappedFileInputStream(Path file, long start, long end, long segmentSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+            this.segmentSize = segmentSize;
+            this.segmentStart = start;
+            mapSegment();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return segment.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int count = Math.min(length, segment.remaining());
+        segment.get(buffer, offset, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && ensureAvailable()) {
+            int step = (int) Math.min(n - skipped, segment.remaining());
+            segment.position(segment.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return segment == null ? 0 : segment.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        if (segment == null) {
+            throw new IOException("Stream closed");
+        }
+        if (segment.hasRemaining()) {
+            return true;
+        }
+        segmentStart += segment.capacity();
+        if (segmentStart >= end) {
+            return false;
+        }
+        mapSegment();
+        return true;
+    }
+
+    private void mapSegment() throws IOException {
+        long size = Math.max(0, Math.min(segmentSize, end - segmentStart));
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, size);
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.duskmage2009.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the deck files below a root directory. By default only the root itself is listed;
+ * with a larger maximum depth subdirectories are walked in parallel, one fork-join task per directory.
+ * <p>
+ * A glob without a {@code /} is matched against the file or directory name, one with a {@code /}
+ * against the path relative to the root, e.g. {@code 2024-*}{@code /eu/*.json}. A file is found if it
+ * matches an include glob and no exclude glob; an excluded directory is not entered at all.
+ * Symbolic links to files are followed, links to directories are not.
+ */
+public class DeckFileFinder {
+    private static final Logger log = LoggerFactory.getLogger(DeckFileFinder.class);
+
+    /**
+     * Files read when no include glob is given.
+     */
+    public static final String DEFAULT_INCLUDE = "*.{json,jsonl,ndjson,json.gz,jsonl.gz,ndjson.gz}";
+
+    /**
+     * Listing directories mostly waits for the file system, so more walkers than cores pay off.
+     */
+    public static final int DEFAULT_WALK_PARALLELISM = 8;
+
+    private static final Pattern DEFAULT_INCLUDE_PATTERN = new Pattern(DEFAULT_INCLUDE);
+    private static final Path END = Path.of("");
+
+    private final List<Pattern> includes = new ArrayList<>();
+    private final List<Pattern> excludes = new ArrayList<>();
+    private int maxDepth = 1;
+    private int walkParallelism = DEFAULT_WALK_PARALLELISM;
+
+    /**
+     * Adds a glob for files to read; without any, {@link #DEFAULT_INCLUDE} is used.
+     */
+    public void addInclude(String glob) {
+        includes.add(new Pattern(glob));
+    }
+
+    /**
+     * Adds a glob for files and directories to skip.
+     */
+    public void addExclude(String glob) {
+        excludes.add(new Pattern(glob));
+    }
+
+    /**
+     * Sets how deep to descend: 1 reads only the root directory, 2 also its subdirectories, and so on.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be at least 1: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    public void setWalkParallelism(int walkParallelism) {
+        this.walkParallelism = walkParallelism;
+    }
+
+    /**
+     * Whether a file below the root would be found, ignoring its depth and whether it exists.
+     */
+    public boolean matches(Path root, Path file) {
+        Path relative = root.relativize(file);
+        return isIncluded(relative) && !isExcluded(relative);
+    }
+
+    /**
+     * Finds all deck files and returns them sorted, so the order does not depend on the walk.
+     */
+    public List<Path> find(Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try {
+            discover(root).forEach(files::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Starts walking in the background and returns the files in the order they are found.
+     * The iterable can be consumed once; its iterator blocks until the next file is found or the
+     * walk has finished, so files can be processed while the rest of the tree is still being listed.
+     * A failure to list the root directory is thrown from the iterator as {@link UncheckedIOException}.
+     *
+     * @throws IOException if the root is not a directory
+     */
+    public Iterable<Path> discover(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new NotDirectoryException(root.toString());
+        }
+
+        Walk walk = new Walk(root);
+        ForkJoinPool pool = new ForkJoinPool(walkParallelism);
+        pool.execute(() -> {
+            try {
+                walk.new DirectoryTask(root, 1).invoke();
+            } finally {
+                log.info("Discovered {} files in {} directories in {} ms", walk.fileCount, walk.directoryCount,
+                        (System.nanoTime() - walk.startTime) / 1_000_000);
+                walk.found.add(END);
+                pool.shutdown();
+            }
+        });
+        return walk::iterator;
+    }
+
+    private boolean isIncluded(Path relative) {
+        if (includes.isEmpty()) {
+            return DEFAULT_INCLUDE_PATTERN.matches(relative);
+        }
+        for (Pattern include : includes) {
+            if (include.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(Path relative) {
+        for (Pattern exclude : excludes) {
+            if (exclude.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Pattern {
+        private final PathMatcher matcher;
+        private final boolean matchesName;
+
+        Pattern(String glob) {
+            this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            this.matchesName = !glob.contains("/");
+        }
+
+        boolean matches(Path relative) {
+            Path subject = matchesName ? relative.getFileName() : relative;
+            return subject != null && matcher.matches(subject);
+        }
+    }
+
+    /**
+     * State of one background walk; the files found are handed over through a queue.
+     */
+    private final class Walk {
+        final Path root;
+        final BlockingQueue<Path> found = new LinkedBlockingQueue<>();
+        final AtomicInteger fileCount = new AtomicInteger();
+        final AtomicInteger directoryCount = new AtomicInteger();
+        final long startTime = System.nanoTime();
+        volatile IOException rootFailure;
+
+        Walk(Path root) {
+            this.root = root;
+        }
+
+        Iterator<Path> iterator() {
+            return new Iterator<>() {
+                private Path next;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null) {
+                        try {
+                            next = found.take();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted while waiting for deck files", e);
+                        }
+                    }
+                    if (next == END && rootFailure != null) {
+                        throw new UncheckedIOException(rootFailure);
+                    }
+                    return next != END;
+                }
+
+                @Override
+                public Path next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Path result = next;
+                    next = null;
+                    return result;
+                }
+            };
+        }
+
+        final class DirectoryTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final Path directory;
+            private final int depth;
+
+            DirectoryTask(Path directory, int depth) {
+                this.directory = directory;
+                this.depth = depth;
+            }
+
+            @Override
+            protected void compute() {
+                directoryCount.incrementAndGet();
+                List<DirectoryTask> subdirectories = new ArrayList<>();
+
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                    for (Path entry : entries) {
+                        Path relative = root.relativize(entry);
+                        if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                            if (depth < maxDepth && !isExcluded(relative)) {
+                                DirectoryTask subdirectory = new DirectoryTask(entry, depth + 1);
+                                subdirectory.fork();
+                                subdirectories.add(subdirectory);
+                            }
+                        } else if (isIncluded(relative) && !isExcluded(relative) && Files.isRegularFile(entry)) {
+                            fileCount.incrementAndGet();
+                            found.add(entry);
+                        }
+                    }
+                } catch (IOException | DirectoryIteratorException e) {
+                    IOException failure = e instanceof DirectoryIteratorException iteratorFailure
+                            ? iteratorFailure.getCause() : (IOException) e;
+                    if (directory.equals(root)) {
+                        rootFailure = failure;
+                    } else {
+                        log.warn("Skipping unreadable directory {}: {}", directory, failure.getMessage());
+                    }
+                }
+
+                for (DirectoryTask subdirectory : subdirectories) {
+                    subdirectory.join();
+                }
+            }
+        }
+    }
+}
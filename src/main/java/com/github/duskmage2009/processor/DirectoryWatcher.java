@@ -0,0 +1,188 @@
+package com.github.duskmage2009.processor;
+
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the statistics of a deck directory up to date while files are created, modified
+ * and deleted. The contribution of every file is kept separately, so a changed file is
+ * re-parsed on its own and its old counts are subtracted instead of re-reading the directory.
+ * <p>
+ * Events are collected until the directory has been quiet for the debounce interval and then
+ * applied as one batch, after which the listener receives the updated totals.
+ * Only the directory itself is watched, not its subdirectories, whatever the processor's
+ * {@link DeckFileFinder} maximum depth.
+ */
+public class DirectoryWatcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    private final FileProcessor processor;
+    private final Path directory;
+    private final String attribute;
+    private final Consumer<StatisticsAccumulator> listener;
+    private final Map<Path, StatisticsAccumulator> partials = new HashMap<>();
+    private final StatisticsAccumulator total;
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+    private WatchService watchService;
+
+    /**
+     * @throws IllegalArgumentException if the attribute is not supported or not
+     *                                  {@link StatisticsAccumulator#isCacheable() cacheable}, since
+     *                                  it could not be subtracted when files change
+     */
+    public DirectoryWatcher(FileProcessor processor, Path directory, String attribute,
+                            Consumer<StatisticsAccumulator> listener) {
+        this.processor = processor;
+        this.directory = directory;
+        this.attribute = attribute;
+        this.listener = listener;
+        this.total = new StatisticsAccumulator(attribute);
+        if (!total.isCacheable()) {
+            throw new IllegalArgumentException("Distinct counts and distributions cannot be watched: " + attribute);
+        }
+    }
+
+    public void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Starts watching and counts the current content of the directory. Registration happens
+     * first, so files that land during the initial scan are picked up by the first batch.
+     */
+    public StatisticsAccumulator start() throws IOException, InterruptedException {
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        log.info("Watching directory: {}", directory);
+
+        rescan();
+        return total;
+    }
+
+    /**
+     * Applies debounced batches of changes until the thread is interrupted or the watcher is closed.
+     */
+    public void run() throws IOException, InterruptedException {
+        try {
+            while (processNextBatch(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                // keep watching
+            }
+        } catch (ClosedWatchServiceException e) {
+            log.info("Stopped watching directory: {}", directory);
+        }
+    }
+
+    /**
+     * Waits up to the timeout for a change, collects further changes until the directory has been
+     * quiet for the debounce interval and applies them.
+     *
+     * @return false if nothing changed within the timeout or the directory can no longer be watched
+     */
+    public boolean processNextBatch(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        WatchKey key = watchService.poll(timeout, unit);
+        if (key == null) {
+            return false;
+        }
+
+        Set<Path> changedFiles = new LinkedHashSet<>();
+        boolean overflow = false;
+        while (key != null) {
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                } else {
+                    Path file = directory.resolve((Path) event.context());
+                    if (processor.getFileFinder().matches(directory, file)) {
+                        changedFiles.add(file);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                log.warn("Directory {} can no longer be watched", directory);
+                return false;
+            }
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+
+        if (overflow) {
+            log.warn("Missed file events in {}, counting the directory again", directory);
+            rescan();
+        } else if (!changedFiles.isEmpty()) {
+            apply(changedFiles);
+        }
+        return true;
+    }
+
+    public StatisticsAccumulator getStatistics() {
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void rescan() throws IOException, InterruptedException {
+        for (StatisticsAccumulator partial : partials.values()) {
+            total.subtract(partial);
+        }
+        partials.clear();
+
+        List<Path> files = processor.findJsonFiles(directory);
+        if (!files.isEmpty()) {
+            partials.putAll(processor.aggregateFiles(directory, files, attribute));
+            partials.values().forEach(total::merge);
+        }
+        listener.accept(total);
+    }
+
+    private void apply(Set<Path> changedFiles) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+
+        List<Path> existingFiles = new ArrayList<>();
+        for (Path file : changedFiles) {
+            StatisticsAccumulator previous = partials.remove(file);
+            if (previous != null) {
+                total.subtract(previous);
+            }
+            if (Files.isRegularFile(file)) {
+                existingFiles.add(file);
+            }
+        }
+
+        if (!existingFiles.isEmpty()) {
+            Map<Path, StatisticsAccumulator> parsed = processor.aggregateFiles(directory, existingFiles, attribute);
+            partials.putAll(parsed);
+            parsed.values().forEach(total::merge);
+        }
+
+        log.info("Applied changes of {} files ({} re-parsed) in {} ms",
+                changedFiles.size(), existingFiles.size(), System.currentTimeMillis() - startTime);
+        listener.accept(total);
+    }
+}
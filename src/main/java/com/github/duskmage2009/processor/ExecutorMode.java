@@ -0,0 +1,25 @@
+package com.github.duskmage2009.processor;
+
+/**
+ * How {@link FileProcessor} runs its parsing tasks.
+ */
+public enum ExecutorMode {
+    /**
+     * Fixed pool of platform threads; each thread reads and parses one file or slice at a time.
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per file or slice (Java 21+). Up to
+     * {@link FileProcessor#MAX_CONCURRENT_READS} files are read at once, far more than there are
+     * cores, so slow storage is waited on for many files together, while the CPU-bound parsing
+     * is capped by a semaphore.
+     */
+    VIRTUAL,
+
+    /**
+     * Separate stages for reading (asynchronous file channels), parsing (one platform thread per core)
+     * and aggregation (in completion order), connected by bounded queues; see {@link ParsePipeline}.
+     */
+    PIPELINE
+}
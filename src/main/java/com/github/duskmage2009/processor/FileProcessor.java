@@ -1,103 +1,676 @@
 package com.github.duskmage2009.processor;
 
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.cache.DeckSnapshotBuilder;
+import com.github.duskmage2009.cache.FileAggregate;
+import com.github.duskmage2009.cache.FileManifest;
+import com.github.duskmage2009.cache.ManifestEntry;
+import com.github.duskmage2009.cache.SnapshotCache;
 import com.github.duskmage2009.model.Deck;
 import com.github.duskmage2009.parser.DeckParser;
+import com.github.duskmage2009.parser.DecodingMode;
+import com.github.duskmage2009.parser.FileSlice;
+import com.github.duskmage2009.parser.JsonArraySplitter;
+import com.github.duskmage2009.parser.JsonLinesSplitter;
+import com.github.duskmage2009.statistics.MultiStatisticsAccumulator;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.DirectoryStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 public class FileProcessor {
     private static final Logger log = LoggerFactory.getLogger(FileProcessor.class);
+
+    /**
+     * JSON Lines files and top-level deck arrays larger than this are split into slices of about this size.
+     */
+    public static final long DEFAULT_SLICE_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * In {@link ExecutorMode#VIRTUAL} slices up to this size are read into memory before
+     * waiting for a parse permit; larger ones are streamed while holding the permit.
+     */
+    public static final long PREFETCH_LIMIT = 4L * 1024 * 1024;
+
+    /**
+     * In {@link ExecutorMode#VIRTUAL} at most this many slices are read or waiting to be parsed
+     * at once, which bounds the memory held by prefetched content.
+     */
+    public static final int MAX_CONCURRENT_READS = 64;
+
+    private static final int PIPELINE_MIN_QUEUE_CAPACITY = 8;
+
+    /**
+     * Files smaller than this are never split just to balance the threads' work.
+     */
+    private static final long MIN_BALANCED_SLICE_SIZE = 4L * 1024 * 1024;
+
+    /**
+     * Share of the maximum heap that slices in flight may use when no heap budget is set.
+     */
+    public static final double DEFAULT_HEAP_BUDGET_FRACTION = 0.5;
+
+    /**
+     * On the platform pool, whole files up to this size are parsed in batches rather than one task each.
+     */
+    public static final long BATCH_FILE_SIZE = 64 * 1024;
+
+    /**
+     * A batch of small files is closed once it holds this many bytes.
+     */
+    public static final long BATCH_BYTES = 1024 * 1024;
+
     private final DeckParser parser;
     private final int threadPoolSize;
+    private JsonLinesSplitter jsonLinesSplitter = new JsonLinesSplitter();
+    private JsonArraySplitter jsonArraySplitter = new JsonArraySplitter();
+    private long sliceSize = DEFAULT_SLICE_SIZE;
+    private DeckFileFinder fileFinder = new DeckFileFinder();
+    private ExecutorMode executorMode = ExecutorMode.PLATFORM;
+    private int parseParallelism = Runtime.getRuntime().availableProcessors();
+    private boolean largestFirst = true;
+    private long heapBudget;
+    private double heapBytesPerFileByte = HeapBudget.DEFAULT_HEAP_BYTES_PER_FILE_BYTE;
+    private int topK;
+    private double quantileAccuracy = StatisticsAccumulator.DEFAULT_QUANTILE_ACCURACY;
 
     public FileProcessor(int threadPoolSize) {
-        this.parser = new DeckParser();
+        this(threadPoolSize, DecodingMode.TOKEN);
+    }
+
+    public FileProcessor(int threadPoolSize, DecodingMode decodingMode) {
+        this(threadPoolSize, new DeckParser(decodingMode));
+    }
+
+    public FileProcessor(int threadPoolSize, DeckParser parser) {
+        this.parser = parser;
         this.threadPoolSize = threadPoolSize;
     }
 
     public List<Deck> processDirectory(Path directoryPath) throws IOException, InterruptedException {
-        log.info("Processing directory: {} with {} threads", directoryPath, threadPoolSize);
-        logMemoryUsage("Before processing");
+        List<Deck> decks = new ArrayList<>();
 
-        List<Path> jsonFiles = findJsonFiles(directoryPath);
-        log.info("Found {} JSON files", jsonFiles.size());
+        List<List<Deck>> results = processFiles(directoryPath, (slice, content, length) -> {
+            List<Deck> parsedDecks = new ArrayList<>();
+            parse(slice, content, length, parsedDecks::add);
+            return parsedDecks.isEmpty() ? null : parsedDecks;
+        });
+        for (List<Deck> parsedDecks : results) {
+            decks.addAll(parsedDecks);
+        }
 
-        if (jsonFiles.isEmpty()) {
-            log.warn("No JSON files found in directory");
-            return new ArrayList<>();
+        return decks;
+    }
+
+    /**
+     * Streaming alternative to {@link #processDirectory(Path)}: every deck is folded into
+     * the statistics for {@code attribute} as soon as it is parsed and is not kept afterwards.
+     * Files are parsed while the directory tree is still being walked, each file (or slice) into
+     * its own partial accumulator, and partials are merged into the total in the order they
+     * complete, since counts do not depend on the order. A file or slice that fails to parse
+     * contributes nothing.
+     *
+     * @throws IllegalArgumentException if the attribute is not supported
+     */
+    public StatisticsAccumulator aggregateDirectory(Path directoryPath, String attribute)
+            throws IOException, InterruptedException {
+        return aggregateDirectory(directoryPath, List.of(attribute)).getAccumulators().get(0);
+    }
+
+    /**
+     * Like {@link #aggregateDirectory(Path, String)} for several attributes at once:
+     * the directory is parsed once and every deck is traversed once for all of them.
+     *
+     * @throws IllegalArgumentException if an attribute is not supported
+     */
+    public MultiStatisticsAccumulator aggregateDirectory(Path directoryPath, List<String> attributes)
+            throws IOException, InterruptedException {
+        MultiStatisticsAccumulator total = new MultiStatisticsAccumulator(attributes, topK, quantileAccuracy);
+
+        // Counts do not depend on the order, so files are parsed while the tree is still being walked
+        // and partials are merged as soon as they complete
+        processFiles(directoryPath, fileFinder.discover(directoryPath), sliceSize, (slice, content, length) -> {
+            MultiStatisticsAccumulator partial = new MultiStatisticsAccumulator(attributes, topK, quantileAccuracy);
+            return parse(slice, content, length, partial) > 0 ? partial : null;
+        }, (slice, partial) -> total.merge(partial));
+
+        return total;
+    }
+
+    /**
+     * Counts the decks of the given files per file, in file order. A file that fails to parse
+     * completely is left out; one whose large file slices partly failed keeps what was read.
+     *
+     * @throws IllegalArgumentException if the attribute is not supported
+     */
+    public Map<Path, StatisticsAccumulator> aggregateFiles(Path directoryPath, List<Path> files, String attribute)
+            throws IOException, InterruptedException {
+        // Fails fast on an unsupported attribute instead of in every task
+        new StatisticsAccumulator(attribute);
+
+        Map<Path, StatisticsAccumulator> partialsByFile = new LinkedHashMap<>();
+        List<Map.Entry<Path, StatisticsAccumulator>> partials =
+                processFiles(directoryPath, files, (slice, content, length) -> {
+                    StatisticsAccumulator partial = new StatisticsAccumulator(attribute);
+                    parse(slice, content, length, partial);
+                    return Map.entry(slice.getFile(), partial);
+                });
+        for (Map.Entry<Path, StatisticsAccumulator> partial : partials) {
+            partialsByFile.merge(partial.getKey(), partial.getValue(), (merged, next) -> {
+                merged.merge(next);
+                return merged;
+            });
         }
 
-        ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
-        List<Future<List<Deck>>> futures = new ArrayList<>();
+        return partialsByFile;
+    }
+
+    /**
+     * Incremental variant of {@link #aggregateDirectory(Path, String)} for directories that change
+     * little between runs. Only new and changed files are parsed, counting every attribute at once;
+     * the partial results of all other files come from the directory's {@link FileManifest}, and
+     * deleted files are dropped from it. Files are told apart by size and modification time, and
+     * those that differ by the content hash the parsing tasks compute from the bytes they read, so
+     * a file that was only touched is not parsed again unless it was split into slices. A file that fails to parse contributes nothing, except
+     * that a large file split into slices keeps the slices that did parse; either way it is not
+     * cached, so it is retried on the next run.
+     *
+     * @throws IllegalArgumentException if the attribute is not supported
+     */
+    public StatisticsAccumulator aggregateDirectoryIncrementally(Path directoryPath, String attribute)
+            throws IOException, InterruptedException {
+        return aggregateDirectoryIncrementally(directoryPath, List.of(attribute)).getAccumulators().get(0);
+    }
 
-        long startTime = System.currentTimeMillis();
+    /**
+     * Like {@link #aggregateDirectoryIncrementally(Path, String)} for several attributes at once.
+     *
+     * @throws IllegalArgumentException if an attribute is not supported, not
+     *                                  {@link StatisticsAccumulator#isCacheable() cacheable} or a cube,
+     *                                  which are not cached per file
+     */
+    public MultiStatisticsAccumulator aggregateDirectoryIncrementally(Path directoryPath, List<String> attributes)
+            throws IOException, InterruptedException {
+        MultiStatisticsAccumulator total = new MultiStatisticsAccumulator(attributes);
+        for (StatisticsAccumulator accumulator : total.getAccumulators()) {
+            if (!accumulator.isCacheable()) {
+                throw new IllegalArgumentException(
+                        "Distinct counts and distributions cannot be computed incrementally: "
+                                + accumulator.getAttribute());
+            }
+        }
+        if (!total.getCubes().isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Cubes cannot be computed incrementally: " + total.getCubes().get(0).getName());
+        }
 
+        List<Path> jsonFiles = findJsonFiles(directoryPath);
+        FileManifest manifest = FileManifest.load(directoryPath);
+        int removedCount = manifest.retainFiles(jsonFiles);
+
+        Map<Path, ManifestEntry> cached = new HashMap<>();
+        List<Path> changedFiles = new ArrayList<>();
         for (Path jsonFile : jsonFiles) {
-            Future<List<Deck>> future = executor.submit(() -> {
+            ManifestEntry entry = manifest.lookup(jsonFile);
+            if (entry != null) {
+                cached.put(jsonFile, entry);
+            } else {
+                changedFiles.add(jsonFile);
+            }
+        }
+        log.info("Incremental run: {} unchanged, {} new or changed, {} removed files",
+                cached.size(), changedFiles.size(), removedCount);
+
+        Set<Path> failedFiles = ConcurrentHashMap.newKeySet();
+        Map<Path, FileAggregate> parsed = new HashMap<>();
+        if (!changedFiles.isEmpty()) {
+            List<FileAggregate> partials = processFiles(directoryPath, changedFiles, (slice, content, length) -> {
+                FileAggregate partial = new FileAggregate(slice.getFile());
                 try {
-                    log.debug("Thread {} parsing file: {}",
-                            Thread.currentThread().getName(), jsonFile.getFileName());
-                    return parser.parse(jsonFile);
+                    if (slice.getStart() == 0) {
+                        // Hashed from the bytes already in memory unless the file is streamed or split
+                        boolean inMemory = slice.isWholeFile() && content != null;
+                        partial.setContentHash(inMemory
+                                ? FileManifest.contentHash(content, length)
+                                : FileManifest.contentHash(slice.getFile()));
+                        if (slice.isWholeFile() && manifest.hasContent(slice.getFile(), partial.getContentHash())) {
+                            return partial;
+                        }
+                    }
+                    parse(slice, content, length, partial);
                 } catch (IOException e) {
-                    log.error("Failed to parse file: {}", jsonFile, e);
-                    return new ArrayList<>();
+                    failedFiles.add(slice.getFile());
+                    throw e;
                 }
+                return partial;
             });
-            futures.add(future);
+            for (FileAggregate partial : partials) {
+                parsed.merge(partial.getFile(), partial, FileAggregate::merge);
+            }
         }
 
-        List<Deck> decks = new ArrayList<>();
-        int successCount = 0;
-        int failCount = 0;
+        for (Path jsonFile : jsonFiles) {
+            ManifestEntry entry = cached.get(jsonFile);
+            FileAggregate aggregate = parsed.get(jsonFile);
+            if (entry == null && aggregate != null && !failedFiles.contains(jsonFile)) {
+                entry = manifest.record(aggregate);
+            }
 
-        for (Future<List<Deck>> future : futures) {
-            try {
-                List<Deck> parsedDecks = future.get();
-                if (parsedDecks != null && !parsedDecks.isEmpty()) {
-                    decks.addAll(parsedDecks);
-                    successCount++;
-                } else {
-                    failCount++;
+            for (StatisticsAccumulator accumulator : total.getAccumulators()) {
+                if (entry != null) {
+                    accumulator.merge(entry.toAccumulator(accumulator.getAttribute()));
+                } else if (aggregate != null) {
+                    accumulator.merge(aggregate.getPartial(accumulator.getAttribute()));
                 }
-            } catch (ExecutionException e) {
-                log.error("Error executing parsing task", e);
-                failCount++;
             }
         }
 
-        executor.shutdown();
-        executor.awaitTermination(1, TimeUnit.MINUTES);
+        manifest.save();
+        return total;
+    }
+
+    /**
+     * Returns the columnar snapshot of the directory's decks, parsing the JSON only when the
+     * stored snapshot is missing or was built from different input files. A freshly parsed
+     * snapshot is written into the directory for the next run.
+     */
+    public DeckSnapshot openSnapshot(Path directoryPath) throws IOException, InterruptedException {
+        List<Path> jsonFiles = findJsonFiles(directoryPath);
+        SnapshotCache cache = new SnapshotCache(directoryPath);
+
+        DeckSnapshot snapshot = cache.load(jsonFiles);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        DeckSnapshotBuilder builder = new DeckSnapshotBuilder();
+        List<DeckSnapshotBuilder> partials = processFiles(directoryPath, jsonFiles, (slice, content, length) -> {
+            DeckSnapshotBuilder partial = new DeckSnapshotBuilder();
+            return parse(slice, content, length, partial) > 0 ? partial : null;
+        });
+        for (DeckSnapshotBuilder partial : partials) {
+            builder.merge(partial);
+        }
+
+        return cache.store(builder, jsonFiles);
+    }
+
+    /**
+     * Sets the slice size used to split large JSON Lines and array files across the thread pool.
+     */
+    public void setSliceSize(long sliceSize) {
+        this.sliceSize = sliceSize;
+    }
+
+    /**
+     * Sets which files are read from a directory; by default only the directory's own deck files.
+     */
+    public void setFileFinder(DeckFileFinder fileFinder) {
+        this.fileFinder = fileFinder;
+    }
+
+    public DeckFileFinder getFileFinder() {
+        return fileFinder;
+    }
+
+    /**
+     * Selects how parsing tasks are run; {@link ExecutorMode#PLATFORM} by default.
+     */
+    public void setExecutorMode(ExecutorMode executorMode) {
+        this.executorMode = executorMode;
+    }
+
+    /**
+     * Sets how many slices are parsed at the same time in {@link ExecutorMode#VIRTUAL};
+     * the number of available processors by default.
+     */
+    public void setParseParallelism(int parseParallelism) {
+        this.parseParallelism = parseParallelism;
+    }
+
+    /**
+     * Sets whether the files are dispatched largest first, which is the default. A large file that
+     * starts last keeps one thread busy long after the others have run out of work; starting it
+     * first lets the small files fill the gaps. Files larger than their fair share of the work
+     * are also cut into smaller slices where the format allows it.
+     */
+    public void setLargestFirst(boolean largestFirst) {
+        this.largestFirst = largestFirst;
+    }
+
+    /**
+     * Sets how much heap the slices being read and parsed at the same time may take, estimated
+     * from their size; slices wait for admission while the budget is used up. By default
+     * {@link #DEFAULT_HEAP_BUDGET_FRACTION} of the maximum heap.
+     */
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * Sets the heap needed per byte of deck file while it is parsed, used to estimate a slice's
+     * footprint for the heap budget.
+     */
+    public void setHeapBytesPerFileByte(double heapBytesPerFileByte) {
+        this.heapBytesPerFileByte = heapBytesPerFileByte;
+    }
+
+    /**
+     * Makes {@link #aggregateDirectory} count free-text attributes in fixed-size sketches and report
+     * their {@code topK} most frequent values; 0, the default, counts everything exactly.
+     * The incremental path always counts exactly, since it subtracts the counts of changed files.
+     */
+    public void setTopK(int topK) {
+        if (topK < 0) {
+            throw new IllegalArgumentException("Top K must not be negative: " + topK);
+        }
+        this.topK = topK;
+    }
+
+    /**
+     * Sets the relative accuracy of the quantiles that {@link #aggregateDirectory} reports for
+     * distribution attributes, {@link StatisticsAccumulator#DEFAULT_QUANTILE_ACCURACY} by default.
+     */
+    public void setQuantileAccuracy(double quantileAccuracy) {
+        if (!(quantileAccuracy >= StatisticsAccumulator.MIN_QUANTILE_ACCURACY && quantileAccuracy < 1)) {
+            throw new IllegalArgumentException("Quantile accuracy must be at least "
+                    + StatisticsAccumulator.MIN_QUANTILE_ACCURACY + " and below 1: " + quantileAccuracy);
+        }
+        this.quantileAccuracy = quantileAccuracy;
+    }
+
+    /**
+     * Replaces the splitters of large files, e.g. with ones that fail part-way in tests.
+     */
+    void setSplitters(JsonLinesSplitter jsonLinesSplitter, JsonArraySplitter jsonArraySplitter) {
+        this.jsonLinesSplitter = jsonLinesSplitter;
+        this.jsonArraySplitter = jsonArraySplitter;
+    }
+
+    private long heapBudgetBytes() {
+        return heapBudget > 0 ? heapBudget : (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_BUDGET_FRACTION);
+    }
+
+    /**
+     * Runs the task for every slice of the directory's deck files on the thread pool and returns
+     * the non-null results in file order. A null result or a parsing error counts as a failure.
+     * Large JSON Lines files and deck arrays are split so that one file can use every thread.
+     */
+    private <T> List<T> processFiles(Path directoryPath, FileTask<T> task) throws IOException, InterruptedException {
+        return processFiles(directoryPath, findJsonFiles(directoryPath), task);
+    }
+
+    private <T> List<T> processFiles(Path directoryPath, List<Path> jsonFiles, FileTask<T> task)
+            throws IOException, InterruptedException {
+        Map<Path, Integer> fileOrder = new HashMap<>();
+        for (Path jsonFile : jsonFiles) {
+            fileOrder.putIfAbsent(jsonFile, fileOrder.size());
+        }
+        Map<FileSlice, T> resultsBySlice = new TreeMap<>(Comparator
+                .comparing((FileSlice slice) -> fileOrder.get(slice.getFile()))
+                .thenComparingLong(FileSlice::getStart));
+
+        List<Path> schedule = jsonFiles;
+        long targetSliceSize = sliceSize;
+        if (largestFirst) {
+            Map<Path, Long> sizes = new HashMap<>();
+            long totalSize = 0;
+            for (Path jsonFile : jsonFiles) {
+                long size = fileSize(jsonFile);
+                sizes.put(jsonFile, size);
+                totalSize += size;
+            }
+            schedule = new ArrayList<>(jsonFiles);
+            schedule.sort(Comparator.comparing(sizes::get).reversed());
+            targetSliceSize = balancedSliceSize(totalSize);
+        }
+
+        processFiles(directoryPath, schedule, targetSliceSize, task, resultsBySlice::put);
+        return new ArrayList<>(resultsBySlice.values());
+    }
+
+    /**
+     * Core of {@link #processFiles(Path, List, FileTask)}: hands every non-null result to the consumer
+     * on the calling thread, in completion order, together with its slice. The files are consumed once,
+     * as they are being discovered; with {@link #setLargestFirst largest-first} scheduling, slices
+     * that wait for a thread are started largest first.
+     */
+    private <T> void processFiles(Path directoryPath, Iterable<Path> jsonFiles, long targetSliceSize,
+                                  FileTask<T> task, BiConsumer<FileSlice, T> resultConsumer)
+            throws IOException, InterruptedException {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            log.info("Processing directory: {} with virtual threads, {} parsing at once",
+                    directoryPath, parseParallelism);
+        } else if (executorMode == ExecutorMode.PIPELINE) {
+            log.info("Processing directory: {} with a read/parse/aggregate pipeline, {} parsing threads",
+                    directoryPath, parseParallelism);
+        } else {
+            log.info("Processing directory: {} with {} threads", directoryPath, threadPoolSize);
+        }
+        logMemoryUsage("Before processing");
+
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger failCount = new AtomicInteger();
+        BiConsumer<FileSlice, T> countingConsumer = (slice, result) -> {
+            if (result != null) {
+                successCount.incrementAndGet();
+                resultConsumer.accept(slice, result);
+            } else {
+                failCount.incrementAndGet();
+            }
+        };
+
+        long startTime = System.currentTimeMillis();
+        HeapBudget heapBudget = new HeapBudget(heapBudgetBytes(), heapBytesPerFileByte);
+
+        int fileCount;
+        try {
+            if (executorMode == ExecutorMode.PIPELINE) {
+                int queueCapacity = Math.max(PIPELINE_MIN_QUEUE_CAPACITY, 2 * parseParallelism);
+                ParsePipeline<T> pipeline = new ParsePipeline<>(task, parseParallelism, queueCapacity, PREFETCH_LIMIT);
+                pipeline.setLargestFirst(largestFirst);
+                pipeline.setHeapBudget(heapBudget);
+                fileCount = pipeline.run(jsonFiles,
+                        (jsonFile, sliceConsumer) -> sliceFile(jsonFile, targetSliceSize, sliceConsumer),
+                        countingConsumer);
+            } else {
+                fileCount = runOnExecutor(jsonFiles, targetSliceSize, task, heapBudget, countingConsumer, failCount);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        log.info("Found {} JSON files", fileCount);
+        if (fileCount == 0) {
+            log.warn("No JSON files found in directory");
+            return;
+        }
 
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
 
         log.info("Processing completed: {} successful, {} failed in {} ms",
                 successCount, failCount, duration);
+        heapBudget.logSummary(log);
         logMemoryUsage("After processing");
+    }
 
-        return decks;
+    /**
+     * Returns the number of files that were processed.
+     */
+    private <T> int runOnExecutor(Iterable<Path> jsonFiles, long targetSliceSize, FileTask<T> task,
+                                  HeapBudget heapBudget, BiConsumer<FileSlice, T> resultConsumer,
+                                  AtomicInteger failCount)
+            throws InterruptedException {
+        ExecutorService executor = newExecutor();
+        TaskSubmitter<T> submitter = new TaskSubmitter<>(executor, task, heapBudget);
+
+        // Slices are submitted while large files are still being scanned for boundaries
+        int fileCount = 0;
+        for (Path jsonFile : jsonFiles) {
+            fileCount++;
+            sliceFile(jsonFile, targetSliceSize, submitter);
+        }
+        submitter.flushBatch();
+        if (submitter.sliceCount > fileCount) {
+            log.info("Split into {} parsing tasks", submitter.sliceCount);
+        }
+        if (submitter.batchedCount > 0) {
+            log.info("Batched {} small files into {} tasks", submitter.batchedCount, submitter.batchCount);
+        }
+
+        // Results are taken as they complete, so one slow file does not hold back the others
+        for (int i = 0; i < submitter.taskCount; i++) {
+            SliceTask<T> done = submitter.completed.take();
+            try {
+                List<T> results = done.get();
+                for (int k = 0; k < results.size(); k++) {
+                    resultConsumer.accept(done.slices.get(k), results.get(k));
+                }
+            } catch (ExecutionException e) {
+                log.error("Error executing parsing task", e);
+                failCount.addAndGet(done.slices.size());
+            }
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        // Virtual threads are not reused, so only a pool has per-thread idle time worth reporting
+        if (executorMode == ExecutorMode.PLATFORM) {
+            submitter.idleTracker.logSummary(log);
+        }
+        return fileCount;
     }
 
-    private List<Path> findJsonFiles(Path directoryPath) throws IOException {
-        List<Path> jsonFiles = new ArrayList<>();
+    /**
+     * Reads a small slice into memory without holding a parse permit, so that many virtual
+     * threads can wait for slow storage at once, and parses it within the parse limit.
+     */
+    private <T> T runWithPermits(FileTask<T> task, FileSlice slice, long length,
+                                 Semaphore readPermits, Semaphore parsePermits)
+            throws IOException, InterruptedException {
+        readPermits.acquire();
+        try {
+            byte[] content = length <= PREFETCH_LIMIT ? parser.readBytes(slice) : null;
+            parsePermits.acquire();
+            try {
+                return task.process(slice, content, content != null ? content.length : 0);
+            } finally {
+                parsePermits.release();
+            }
+        } finally {
+            readPermits.release();
+        }
+    }
 
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath, "*.json")) {
-            for (Path entry : stream) {
-                if (Files.isRegularFile(entry)) {
-                    jsonFiles.add(entry);
+    private int parse(FileSlice slice, byte[] content, int length, Consumer<Deck> deckConsumer) throws IOException {
+        return content != null
+                ? parser.parse(slice, content, length, deckConsumer)
+                : parser.parse(slice, deckConsumer);
+    }
+
+    private static long sliceLength(FileSlice slice) throws IOException {
+        long end = slice.getEnd() < 0 ? Files.size(slice.getFile()) : slice.getEnd();
+        return end - slice.getStart();
+    }
+
+    private static long sliceSizeOrZero(FileSlice slice) {
+        try {
+            return sliceLength(slice);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long fileSize(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            // The file is reported when it fails to parse
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the slice size that cuts any file larger than half a worker's fair share of the
+     * input into several slices, so that no single file decides when the run ends.
+     */
+    private long balancedSliceSize(long totalSize) {
+        int workers = executorMode == ExecutorMode.PLATFORM ? threadPoolSize : parseParallelism;
+        long fairShare = totalSize / (2L * Math.max(1, workers));
+        return Math.min(sliceSize, Math.max(MIN_BALANCED_SLICE_SIZE, fairShare));
+    }
+
+    private ExecutorService newExecutor() {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            // Looked up reflectively so the project still builds for Java 17
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21 or newer, using {} platform threads", threadPoolSize);
+            }
+        }
+        // Waiting slices are started largest first rather than in submission order
+        return new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+    }
+
+    /**
+     * Emits the slices of one file: line ranges for large JSON Lines files, element ranges for
+     * large top-level arrays, and the whole file otherwise or when scanning fails before the
+     * first slice. Slices are handed out while the file is still being scanned, so once one was
+     * emitted the file is not parsed whole as well, which would count its decks twice; the part
+     * after a failed scan is skipped instead. Compressed files cannot be cut by byte offset and
+     * are always parsed whole.
+     */
+    private void sliceFile(Path jsonFile, long targetSliceSize, Consumer<FileSlice> sliceConsumer) {
+        int[] emitted = new int[1];
+        Consumer<FileSlice> countingConsumer = slice -> {
+            emitted[0]++;
+            sliceConsumer.accept(slice);
+        };
+        try {
+            if (!DeckParser.isGzip(jsonFile) && Files.size(jsonFile) > targetSliceSize) {
+                if (DeckParser.isJsonLines(jsonFile)) {
+                    jsonLinesSplitter.split(jsonFile, targetSliceSize, countingConsumer);
+                    return;
                 }
+                if (jsonArraySplitter.split(jsonFile, targetSliceSize, countingConsumer)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            if (emitted[0] > 0) {
+                log.error("Could not split file {} after {} slices, skipping the rest of it",
+                        jsonFile, emitted[0], e);
+                return;
             }
+            log.warn("Could not split file {}, parsing it as a whole", jsonFile, e);
         }
+        sliceConsumer.accept(FileSlice.wholeFile(jsonFile));
+    }
 
-        return jsonFiles;
+    /**
+     * Lists the deck files found by the {@link DeckFileFinder}, sorted by path.
+     */
+    public List<Path> findJsonFiles(Path directoryPath) throws IOException {
+        return fileFinder.find(directoryPath);
     }
 
     private void logMemoryUsage(String phase) {
@@ -114,4 +687,155 @@ public class FileProcessor {
                 totalMemory / (1024 * 1024),
                 maxMemory / (1024 * 1024));
     }
-}
\ No newline at end of file
+
+    /**
+     * Turns the slices of one run into tasks on the executor. On the platform pool, slices of small
+     * files are collected into batches of about {@link #BATCH_BYTES}, each parsed by one task into
+     * one reused buffer, which saves the per-task overhead on directories of many tiny files.
+     */
+    private final class TaskSubmitter<T> implements Consumer<FileSlice> {
+        private final ExecutorService executor;
+        private final FileTask<T> task;
+        private final HeapBudget heapBudget;
+        private final BlockingQueue<SliceTask<T>> completed = new LinkedBlockingQueue<>();
+        private final Semaphore readPermits = new Semaphore(MAX_CONCURRENT_READS);
+        private final Semaphore parsePermits = new Semaphore(parseParallelism);
+        private final WorkerIdleTracker idleTracker = new WorkerIdleTracker();
+        private List<FileSlice> batch = new ArrayList<>();
+        private List<Long> batchLengths = new ArrayList<>();
+        private long batchBytes;
+        private int taskCount;
+        private int sliceCount;
+        private int batchCount;
+        private int batchedCount;
+
+        TaskSubmitter(ExecutorService executor, FileTask<T> task, HeapBudget heapBudget) {
+            this.executor = executor;
+            this.task = task;
+            this.heapBudget = heapBudget;
+        }
+
+        @Override
+        public void accept(FileSlice slice) {
+            sliceCount++;
+            long length = sliceSizeOrZero(slice);
+            if (executorMode != ExecutorMode.PLATFORM || !slice.isWholeFile() || length > BATCH_FILE_SIZE) {
+                submit(List.of(slice), List.of(length), length);
+                return;
+            }
+            batch.add(slice);
+            batchLengths.add(length);
+            batchBytes += length;
+            if (batchBytes >= BATCH_BYTES) {
+                flushBatch();
+            }
+        }
+
+        void flushBatch() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (batch.size() > 1) {
+                batchCount++;
+                batchedCount += batch.size();
+            }
+            submit(batch, batchLengths, batchBytes);
+            batch = new ArrayList<>();
+            batchLengths = new ArrayList<>();
+            batchBytes = 0;
+        }
+
+        private void submit(List<FileSlice> slices, List<Long> lengths, long totalLength) {
+            executor.execute(new SliceTask<>(slices, largestFirst ? totalLength : 0, taskCount++,
+                    () -> run(slices, lengths), completed));
+        }
+
+        private List<T> run(List<FileSlice> slices, List<Long> lengths) throws InterruptedException {
+            long estimate = 0;
+            long maxLength = 0;
+            for (int i = 0; i < slices.size(); i++) {
+                estimate += heapBudget.estimate(slices.get(i), lengths.get(i));
+                maxLength = Math.max(maxLength, lengths.get(i));
+            }
+            // Waiting for admission counts as idle time
+            int reservation = heapBudget.reserve(estimate);
+            long taskStart = System.nanoTime();
+            try {
+                byte[] buffer = slices.size() > 1 ? new byte[(int) maxLength] : null;
+                List<T> results = new ArrayList<>(slices.size());
+                for (int i = 0; i < slices.size(); i++) {
+                    results.add(process(slices.get(i), lengths.get(i), buffer));
+                }
+                return results;
+            } finally {
+                idleTracker.record(taskStart);
+                heapBudget.release(reservation);
+            }
+        }
+
+        private T process(FileSlice slice, long length, byte[] buffer) throws InterruptedException {
+            try {
+                log.debug("Thread {} parsing file: {}",
+                        Thread.currentThread().getName(), slice);
+                if (executorMode == ExecutorMode.VIRTUAL) {
+                    return runWithPermits(task, slice, length, readPermits, parsePermits);
+                }
+                if (buffer != null) {
+                    int read = parser.readBytes(slice, buffer);
+                    if (read >= 0) {
+                        return task.process(slice, buffer, read);
+                    }
+                }
+                return task.process(slice, null, 0);
+            } catch (IOException e) {
+                log.error("Failed to parse file: {}", slice, e);
+                return null;
+            } catch (RuntimeException e) {
+                log.error("Error executing parsing task", e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A parsing task for one slice or a batch of small files, ordered by size, largest first, and
+     * in submission order among equal sizes, that queues itself for the caller once it is done.
+     * Its result holds one entry per slice, null for a slice that failed.
+     */
+    private static final class SliceTask<T> extends FutureTask<List<T>> implements Comparable<SliceTask<?>> {
+        private final List<FileSlice> slices;
+        private final long size;
+        private final int sequence;
+        private final BlockingQueue<SliceTask<T>> completed;
+
+        SliceTask(List<FileSlice> slices, long size, int sequence, Callable<List<T>> callable,
+                  BlockingQueue<SliceTask<T>> completed) {
+            super(callable);
+            this.slices = slices;
+            this.size = size;
+            this.sequence = sequence;
+            this.completed = completed;
+        }
+
+        @Override
+        protected void done() {
+            completed.add(this);
+        }
+
+        @Override
+        public int compareTo(SliceTask<?> other) {
+            int bySize = Long.compare(other.size, size);
+            return bySize != 0 ? bySize : Integer.compare(sequence, other.sequence);
+        }
+    }
+
+    @FunctionalInterface
+    interface FileTask<T> {
+        /**
+         * @param content the slice's raw bytes if they were read in advance, null otherwise;
+         *                the buffer may be longer than the slice and is reused afterwards
+         * @param length  the number of valid bytes at the start of {@code content}
+         */
+        T process(FileSlice slice, byte[] content, int length) throws IOException;
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.duskmage2009.processor;
+
+import com.github.duskmage2009.parser.DeckParser;
+import com.github.duskmage2009.parser.FileSlice;
+import org.slf4j.Logger;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for one processing run: every slice reserves an estimate of the heap it
+ * needs while it is read and parsed, and waits while the slices already in flight hold the rest
+ * of the budget. Slices with a small estimate are not metered, so small files flow freely, and
+ * a slice estimated above the whole budget waits until it can run alone instead of never running.
+ * <p>
+ * The estimate is the slice's byte size times a calibrated ratio; compressed files are assumed to
+ * expand by {@link #GZIP_EXPANSION}. Decks kept after parsing, as by
+ * {@link FileProcessor#processDirectory}, are outside the budget.
+ */
+class HeapBudget {
+    /**
+     * Heap bytes per file byte while a slice is in flight: its prefetched content (1.0) plus the
+     * parsed decks, measured at 0.35 on the benchmark data, with some headroom for parser buffers.
+     */
+    static final double DEFAULT_HEAP_BYTES_PER_FILE_BYTE = 1.5;
+
+    /**
+     * Expansion of gzip-compressed deck files; the benchmark data compresses 19:1.
+     */
+    static final int GZIP_EXPANSION = 20;
+
+    /**
+     * Slices estimated below this are admitted without a reservation.
+     */
+    static final long UNMETERED_ESTIMATE = 1024 * 1024;
+
+    private static final int UNIT = 1024;
+
+    private final long budgetBytes;
+    private final double heapBytesPerFileByte;
+    private final int budgetUnits;
+    private final Semaphore units;
+    private final AtomicLong reservedUnits = new AtomicLong();
+    private final AtomicLong peakReservedUnits = new AtomicLong();
+    private final AtomicInteger waitCount = new AtomicInteger();
+
+    HeapBudget(long budgetBytes, double heapBytesPerFileByte) {
+        this.budgetBytes = budgetBytes;
+        this.heapBytesPerFileByte = heapBytesPerFileByte;
+        this.budgetUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budgetBytes / UNIT));
+        // Fair, so that a large slice is not overtaken forever by smaller ones
+        this.units = new Semaphore(budgetUnits, true);
+    }
+
+    /**
+     * Returns the estimated heap needed to parse a slice of the given length.
+     */
+    long estimate(FileSlice slice, long length) {
+        long expanded = DeckParser.isGzip(slice.getFile()) ? length * GZIP_EXPANSION : length;
+        return (long) (expanded * heapBytesPerFileByte);
+    }
+
+    /**
+     * Waits until the slice fits into the budget and reserves it.
+     *
+     * @return the reservation to pass to {@link #release(int)}
+     */
+    int acquire(FileSlice slice, long length) throws InterruptedException {
+        return reserve(estimate(slice, length));
+    }
+
+    /**
+     * Waits until an estimated footprint fits into the budget and reserves it.
+     *
+     * @return the reservation to pass to {@link #release(int)}
+     */
+    int reserve(long estimate) throws InterruptedException {
+        if (estimate < UNMETERED_ESTIMATE) {
+            return 0;
+        }
+        int reservation = (int) Math.min(budgetUnits, estimate / UNIT);
+        if (!units.tryAcquire(reservation)) {
+            waitCount.incrementAndGet();
+            units.acquire(reservation);
+        }
+        peakReservedUnits.accumulateAndGet(reservedUnits.addAndGet(reservation), Math::max);
+        return reservation;
+    }
+
+    void release(int reservation) {
+        if (reservation > 0) {
+            reservedUnits.addAndGet(-reservation);
+            units.release(reservation);
+        }
+    }
+
+    long getPeakReservedBytes() {
+        return peakReservedUnits.get() * UNIT;
+    }
+
+    int getWaitCount() {
+        return waitCount.get();
+    }
+
+    void logSummary(Logger log) {
+        log.info("Heap budget: peak {} MB reserved of {} MB, {} slices waited for admission",
+                getPeakReservedBytes() / (1024 * 1024), budgetBytes / (1024 * 1024), waitCount.get());
+    }
+}
@@ -0,0 +1,348 @@
+package com.github.duskmage2009.processor;
+
+import com.github.duskmage2009.parser.FileSlice;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Three-stage version of {@link FileProcessor}'s parsing loop, used in {@link ExecutorMode#PIPELINE}:
+ * <ol>
+ *     <li>read: a dispatcher thread slices the files and reads each slice with an
+ *     {@link AsynchronousFileChannel}, so no thread is blocked while the storage works;</li>
+ *     <li>parse: a pool of platform threads, one per core by default, parses the bytes;</li>
+ *     <li>aggregate: the calling thread consumes the results in completion order.</li>
+ * </ol>
+ * Both hand-offs are bounded. At most {@code queueCapacity} slices are being read or waiting to be
+ * parsed, and parsers block when {@code queueCapacity} results wait for the aggregator, so a slow
+ * stage holds back the ones before it instead of buffering the corpus in memory.
+ * Slices waiting for a parser are taken largest first unless that is switched off.
+ * Queue depths and stage utilization are logged every second, and the idle time of every
+ * parse thread at the end of the run.
+ */
+class ParsePipeline<T> {
+    private static final Logger log = LoggerFactory.getLogger(ParsePipeline.class);
+
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+
+    private final FileProcessor.FileTask<T> task;
+    private final int parseThreads;
+    private final int queueCapacity;
+    private final long prefetchLimit;
+
+    private final Semaphore readSlots;
+    private final BlockingQueue<ReadSlice> readQueue = new PriorityBlockingQueue<>();
+    private final WorkerIdleTracker idleTracker = new WorkerIdleTracker();
+    private final BlockingQueue<ParseResult<T>> resultQueue;
+
+    private final AtomicInteger readsInFlight = new AtomicInteger();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readNanos = new AtomicLong();
+    private final AtomicLong parseNanos = new AtomicLong();
+    private long aggregateNanos;
+    private volatile int maxReadQueue;
+    private volatile int maxResultQueue;
+    private volatile UncheckedIOException dispatchFailure;
+    private boolean largestFirst = true;
+    private HeapBudget heapBudget;
+
+    ParsePipeline(FileProcessor.FileTask<T> task, int parseThreads, int queueCapacity, long prefetchLimit) {
+        this.task = task;
+        this.parseThreads = parseThreads;
+        this.queueCapacity = queueCapacity;
+        this.prefetchLimit = prefetchLimit;
+        this.readSlots = new Semaphore(queueCapacity);
+        this.resultQueue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    void setLargestFirst(boolean largestFirst) {
+        this.largestFirst = largestFirst;
+    }
+
+    /**
+     * Makes the read stage wait for admission before reading a slice; the reservation is
+     * released once the slice has been parsed.
+     */
+    void setHeapBudget(HeapBudget heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    /**
+     * Runs all slices of the files through the pipeline. The sink is called on the calling thread,
+     * in completion order, with the slice and its result; a null result stands for a slice that failed.
+     * Returns the number of files that were read.
+     */
+    int run(Iterable<Path> files, BiConsumer<Path, Consumer<FileSlice>> slicer, BiConsumer<FileSlice, T> sink)
+            throws InterruptedException {
+        long startTime = System.nanoTime();
+
+        AtomicInteger fileCount = new AtomicInteger();
+        Thread dispatcher = new Thread(() -> dispatch(files, slicer, fileCount), "pipeline-read");
+        dispatcher.start();
+        Thread[] parsers = new Thread[parseThreads];
+        for (int i = 0; i < parseThreads; i++) {
+            parsers[i] = new Thread(this::parseLoop, "pipeline-parse-" + (i + 1));
+            parsers[i].start();
+        }
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor();
+        progress.scheduleAtFixedRate(() -> logProgress(startTime),
+                PROGRESS_INTERVAL_MILLIS, PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        try {
+            int finishedParsers = 0;
+            while (finishedParsers < parseThreads) {
+                ParseResult<T> result = resultQueue.take();
+                maxResultQueue = Math.max(maxResultQueue, resultQueue.size() + 1);
+                if (result.slice == null) {
+                    finishedParsers++;
+                    continue;
+                }
+                long aggregateStart = System.nanoTime();
+                sink.accept(result.slice, result.value);
+                aggregateNanos += System.nanoTime() - aggregateStart;
+            }
+            dispatcher.join();
+        } finally {
+            progress.shutdownNow();
+            dispatcher.interrupt();
+            for (Thread parser : parsers) {
+                parser.interrupt();
+            }
+        }
+
+        if (dispatchFailure != null) {
+            throw dispatchFailure;
+        }
+        logSummary(startTime);
+        idleTracker.logSummary(log);
+        return fileCount.get();
+    }
+
+    private void dispatch(Iterable<Path> files, BiConsumer<Path, Consumer<FileSlice>> slicer,
+                          AtomicInteger fileCount) {
+        AtomicInteger index = new AtomicInteger();
+        Phaser reads = new Phaser(1);
+        try {
+            for (Path file : files) {
+                fileCount.incrementAndGet();
+                slicer.accept(file, slice -> {
+                    try {
+                        readSlots.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for a read slot", e);
+                    }
+                    submitRead(new ReadSlice(index.getAndIncrement(), slice), reads);
+                });
+            }
+            reads.arriveAndAwaitAdvance();
+        } catch (UncheckedIOException e) {
+            dispatchFailure = e;
+        } catch (RuntimeException e) {
+            log.error("Pipeline read stage stopped", e);
+        } finally {
+            for (int i = 0; i < parseThreads; i++) {
+                readQueue.add(ReadSlice.END);
+            }
+        }
+    }
+
+    /**
+     * Reads a small slice asynchronously; larger ones are handed to the parsers to be streamed.
+     */
+    private void submitRead(ReadSlice item, Phaser reads) {
+        FileSlice slice = item.slice;
+        AsynchronousFileChannel channel;
+        long start = slice.getStart();
+        long end;
+        try {
+            end = slice.getEnd() < 0 ? Files.size(slice.getFile()) : slice.getEnd();
+            if (largestFirst) {
+                item.size = end - start;
+            }
+            if (heapBudget != null) {
+                item.reservation = heapBudget.acquire(slice, end - start);
+            }
+            if (end - start > prefetchLimit) {
+                enqueue(item);
+                return;
+            }
+            channel = AsynchronousFileChannel.open(slice.getFile(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            item.failure = e;
+            enqueue(item);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for heap budget", e);
+        }
+
+        reads.register();
+        readsInFlight.incrementAndGet();
+        long readStart = System.nanoTime();
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        channel.read(buffer, start, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer read, Void attachment) {
+                if (read >= 0 && buffer.hasRemaining()) {
+                    channel.read(buffer, start + buffer.position(), null, this);
+                    return;
+                }
+                // A file that shrank since its size was taken yields what could still be read
+                item.content = buffer.hasRemaining()
+                        ? Arrays.copyOf(buffer.array(), buffer.position()) : buffer.array();
+                finish();
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                item.failure = e;
+                finish();
+            }
+
+            private void finish() {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close {}", slice.getFile(), e);
+                }
+                bytesRead.addAndGet(buffer.position());
+                readNanos.addAndGet(System.nanoTime() - readStart);
+                readsInFlight.decrementAndGet();
+                enqueue(item);
+                reads.arriveAndDeregister();
+            }
+        });
+    }
+
+    private void enqueue(ReadSlice item) {
+        readQueue.add(item);
+        maxReadQueue = Math.max(maxReadQueue, readQueue.size());
+    }
+
+    private void parseLoop() {
+        try {
+            while (true) {
+                ReadSlice item = readQueue.take();
+                if (item == ReadSlice.END) {
+                    break;
+                }
+                readSlots.release();
+                long taskStart = System.nanoTime();
+                T value = parse(item);
+                idleTracker.record(taskStart);
+                if (heapBudget != null) {
+                    heapBudget.release(item.reservation);
+                }
+                resultQueue.put(new ParseResult<>(item.slice, value));
+            }
+            resultQueue.put(new ParseResult<>(null, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private T parse(ReadSlice item) {
+        if (item.failure != null) {
+            log.error("Failed to read file: {}", item.slice, item.failure);
+            return null;
+        }
+        long parseStart = System.nanoTime();
+        try {
+            log.debug("Thread {} parsing file: {}", Thread.currentThread().getName(), item.slice);
+            return task.process(item.slice, item.content, item.content != null ? item.content.length : 0);
+        } catch (IOException e) {
+            log.error("Failed to parse file: {}", item.slice, e);
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Error executing parsing task", e);
+            return null;
+        } finally {
+            parseNanos.addAndGet(System.nanoTime() - parseStart);
+        }
+    }
+
+    private void logProgress(long startTime) {
+        log.info("Pipeline: {} MB read, {} reads in flight, read queue {}/{}, result queue {}/{}, "
+                        + "parse utilization {}%",
+                bytesRead.get() / (1024 * 1024), readsInFlight.get(), readQueue.size(), queueCapacity,
+                resultQueue.size(), queueCapacity, parseUtilization(startTime));
+    }
+
+    private void logSummary(long startTime) {
+        long wallNanos = Math.max(1, System.nanoTime() - startTime);
+        log.info("Pipeline finished in {} ms: read {} MB with {} reads in flight on average, "
+                        + "parse utilization {}% of {} threads, aggregation utilization {}%, "
+                        + "max read queue {}/{}, max result queue {}/{}",
+                wallNanos / 1_000_000, bytesRead.get() / (1024 * 1024),
+                String.format("%.1f", (double) readNanos.get() / wallNanos),
+                parseUtilization(startTime), parseThreads, aggregateNanos * 100 / wallNanos,
+                maxReadQueue, queueCapacity, maxResultQueue, queueCapacity);
+    }
+
+    private long parseUtilization(long startTime) {
+        long wallNanos = Math.max(1, System.nanoTime() - startTime);
+        return parseNanos.get() * 100 / (wallNanos * parseThreads);
+    }
+
+    /**
+     * A slice on its way to the parsers, ordered largest first and then in submission order;
+     * the end marker sorts after everything else.
+     */
+    private static final class ReadSlice implements Comparable<ReadSlice> {
+        static final ReadSlice END = new ReadSlice(Integer.MAX_VALUE, null);
+
+        final int index;
+        final FileSlice slice;
+        volatile long size;
+        volatile int reservation;
+        volatile byte[] content;
+        volatile Throwable failure;
+
+        ReadSlice(int index, FileSlice slice) {
+            this.index = index;
+            this.slice = slice;
+        }
+
+        @Override
+        public int compareTo(ReadSlice other) {
+            if (this == END || other == END) {
+                return Boolean.compare(this == END, other == END);
+            }
+            int bySize = Long.compare(other.size, size);
+            return bySize != 0 ? bySize : Integer.compare(index, other.index);
+        }
+    }
+
+    private static final class ParseResult<T> {
+        final FileSlice slice;
+        final T value;
+
+        ParseResult(FileSlice slice, T value) {
+            this.slice = slice;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.duskmage2009.processor;
+
+import org.slf4j.Logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long each worker thread of a run spent on tasks, so that the time it sat idle,
+ * waiting for work or for the slowest thread to finish, can be reported per thread.
+ */
+class WorkerIdleTracker {
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Worker> workers = new ConcurrentHashMap<>();
+
+    /**
+     * Records a task that the current thread ran from {@code taskStart} until now.
+     */
+    void record(long taskStart) {
+        long taskEnd = System.nanoTime();
+        Worker worker = workers.computeIfAbsent(Thread.currentThread().getName(), name -> new Worker());
+        synchronized (worker) {
+            worker.busyNanos += taskEnd - taskStart;
+            worker.lastEndNanos = Math.max(worker.lastEndNanos, taskEnd);
+        }
+    }
+
+    /**
+     * Returns the idle time of every worker thread in milliseconds, from the start of the run
+     * until now, by thread name.
+     */
+    Map<String, Long> getIdleMillis() {
+        long wallNanos = System.nanoTime() - startNanos;
+        Map<String, Long> idleMillis = new TreeMap<>();
+        workers.forEach((name, worker) -> idleMillis.put(name, (wallNanos - worker.busyNanos) / 1_000_000));
+        return idleMillis;
+    }
+
+    /**
+     * Logs every worker's busy and idle time and how long the run waited for its slowest thread.
+     */
+    void logSummary(Logger log) {
+        if (workers.isEmpty()) {
+            return;
+        }
+        long endNanos = System.nanoTime();
+        long wallNanos = Math.max(1, endNanos - startNanos);
+        long totalIdleNanos = 0;
+        long firstFinishNanos = Long.MAX_VALUE;
+        long lastFinishNanos = 0;
+
+        for (Map.Entry<String, Worker> entry : new TreeMap<>(workers).entrySet()) {
+            Worker worker = entry.getValue();
+            long idleNanos = wallNanos - worker.busyNanos;
+            totalIdleNanos += idleNanos;
+            firstFinishNanos = Math.min(firstFinishNanos, worker.lastEndNanos);
+            lastFinishNanos = Math.max(lastFinishNanos, worker.lastEndNanos);
+            log.info("Worker {}: busy {} ms, idle {} ms, of which {} ms after its last task",
+                    entry.getKey(), worker.busyNanos / 1_000_000, idleNanos / 1_000_000,
+                    (endNanos - worker.lastEndNanos) / 1_000_000);
+        }
+
+        log.info("Workers idle {}% of the time; the first one finished {} ms before the last",
+                totalIdleNanos * 100 / (wallNanos * workers.size()), (lastFinishNanos - firstFinishNanos) / 1_000_000);
+    }
+
+    private static final class Worker {
+        long busyNanos;
+        long lastEndNanos;
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts the values of one attribute with primitive counters. Values are turned into the
+ * strings of the statistics only when these are read.
+ */
+interface AttributeCounter {
+    /**
+     * Label of a missing value.
+     */
+    String UNKNOWN = "UNKNOWN";
+
+    /**
+     * Adds a count for a value given as it appears in the statistics, e.g. when restoring saved counts.
+     */
+    void add(String value, long count);
+
+    /**
+     * Adds the counts of another counter of the same kind, multiplied by {@code sign}:
+     * 1 to merge, -1 to subtract.
+     */
+    void addAll(AttributeCounter other, long sign);
+
+    /**
+     * Passes every value whose count is not zero to the consumer.
+     */
+    void forEach(ObjLongConsumer<String> consumer);
+}
@@ -0,0 +1,109 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.model.Card;
+
+import java.util.function.Consumer;
+
+/**
+ * Reads the value of one attribute, either from every card of a deck, weighted by its copies,
+ * or once per deck. Extractors are looked up by name in the {@link AttributeRegistry}.
+ * <p>
+ * Values are strings; an extractor whose values are few and known in advance also maps them to a
+ * dense index below {@link #getCardinality()}, which lets a {@link StatisticsCube} count them in
+ * an array. Values outside the dense range fall back to {@link #values}.
+ */
+public abstract class AttributeExtractor {
+    public enum Scope {
+        CARD, DECK
+    }
+
+    private final String name;
+    private final Scope scope;
+
+    protected AttributeExtractor(String name, Scope scope) {
+        this.name = name;
+        this.scope = scope;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * True if a card or deck can have several values at once, like the categories of a deck.
+     * Such attributes cannot be dimensions of a {@link StatisticsCube}.
+     */
+    public boolean isMultiValued() {
+        return false;
+    }
+
+    /**
+     * Number of values that have a dense index; 0 if values are only known as strings.
+     */
+    public int getCardinality() {
+        return 0;
+    }
+
+    /**
+     * Returns the dense index of the value, or -1 to fall back to {@link #values}.
+     *
+     * @param card the card, or null for a deck attribute
+     * @param deck the card's deck; null when card attributes are counted straight from a snapshot
+     */
+    public int index(Card card, DeckFacts deck) {
+        return -1;
+    }
+
+    /**
+     * Returns the value with the given dense index.
+     */
+    public String label(int index) {
+        throw new IndexOutOfBoundsException(name + " has no dense values");
+    }
+
+    /**
+     * Passes the values of the card (or of the deck) to the consumer; none if it is not counted,
+     * like the power of a card that is not a unit.
+     *
+     * @param card the card, or null for a deck attribute
+     * @param deck the card's deck; null when card attributes are counted straight from a snapshot
+     */
+    public abstract void values(Card card, DeckFacts deck, Consumer<String> consumer);
+
+    /**
+     * False for attributes that do not count values, like distinct counts.
+     */
+    boolean isCountedByValue() {
+        return true;
+    }
+
+    /**
+     * True for attributes whose values are whole numbers summarized by their distribution, counted
+     * in a {@link QuantileCounter} with the accuracy the statistics are created with.
+     */
+    boolean isDistribution() {
+        return false;
+    }
+
+    AttributeCounter newCounter() {
+        return new StringCounter();
+    }
+
+    /**
+     * Counts the values of a card with its copies, or of a deck with {@code copies} 1.
+     */
+    void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+        if (getCardinality() > 0) {
+            int index = index(card, deck);
+            if (index >= 0) {
+                counter.add(label(index), copies);
+                return;
+            }
+        }
+        values(card, deck, value -> counter.add(value, copies));
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Every attribute statistics can be calculated for, by name. Starts with the built-in attributes;
+ * more can be registered before they are used.
+ */
+public final class AttributeRegistry {
+    private static final Map<String, AttributeExtractor> EXTRACTORS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new CopyOnWriteArrayList<>();
+
+    static {
+        BuiltInAttributes.registerAll();
+    }
+
+    private AttributeRegistry() {
+    }
+
+    /**
+     * Registers an attribute under its name and the given aliases, all case-insensitive.
+     *
+     * @throws IllegalArgumentException if a name is taken already
+     */
+    public static synchronized void register(AttributeExtractor extractor, String... aliases) {
+        List<String> keys = new ArrayList<>();
+        keys.add(key(extractor.getName()));
+        for (String alias : aliases) {
+            keys.add(key(alias));
+        }
+        for (String key : keys) {
+            if (EXTRACTORS.containsKey(key)) {
+                throw new IllegalArgumentException("Attribute already registered: " + key);
+            }
+        }
+        keys.forEach(key -> EXTRACTORS.put(key, extractor));
+        NAMES.add(extractor.getName());
+    }
+
+    /**
+     * Removes an attribute with all its aliases, e.g. one a test registered.
+     *
+     * @throws IllegalArgumentException if there is no attribute with that name or alias
+     */
+    static synchronized void unregister(String attribute) {
+        AttributeExtractor extractor = get(attribute);
+        EXTRACTORS.values().removeIf(registered -> registered == extractor);
+        NAMES.remove(extractor.getName());
+    }
+
+    /**
+     * Returns the attribute with the given name or alias, in any case.
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public static AttributeExtractor get(String attribute) {
+        AttributeExtractor extractor = EXTRACTORS.get(key(attribute));
+        if (extractor == null) {
+            throw new IllegalArgumentException(
+                    "Unsupported attribute: " + attribute + "\nSupported: " + String.join(", ", NAMES));
+        }
+        return extractor;
+    }
+
+    /**
+     * Names of every registered attribute, in registration order.
+     */
+    public static List<String> getNames() {
+        return List.copyOf(NAMES);
+    }
+
+    static String key(String attribute) {
+        return attribute.toLowerCase(Locale.ROOT);
+    }
+}
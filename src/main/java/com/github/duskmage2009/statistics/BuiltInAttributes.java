@@ -0,0 +1,314 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardType;
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * The attributes every {@link AttributeRegistry} starts with. Each counts into the primitive
+ * counter that suits its values.
+ */
+final class BuiltInAttributes {
+    private static final String[] POWER_RANGES = {"0", "1-50", "51-100", "101-150", "151-200", "200+"};
+
+    private BuiltInAttributes() {
+    }
+
+    static void registerAll() {
+        AttributeRegistry.register(new EnumAttribute<>("faction", AttributeExtractor.Scope.CARD,
+                Faction.class, (card, deck) -> card.getFaction()));
+        AttributeRegistry.register(new EnumAttribute<>("type", AttributeExtractor.Scope.CARD,
+                CardType.class, (card, deck) -> card.getType()), "cardType");
+        AttributeRegistry.register(new IntAttribute("provision") {
+            @Override
+            boolean isCounted(Card card) {
+                return true;
+            }
+
+            @Override
+            Integer valueOf(Card card) {
+                return card.getProvision();
+            }
+        });
+        // Only units have a power worth counting; a unit without one counts as 0
+        AttributeRegistry.register(new IntAttribute("power") {
+            @Override
+            boolean isCounted(Card card) {
+                return card.getType() == CardType.UNIT;
+            }
+
+            @Override
+            Integer valueOf(Card card) {
+                return card.getPower() != null ? card.getPower() : 0;
+            }
+        });
+        AttributeRegistry.register(new LeaderAbilityAttribute());
+        AttributeRegistry.register(new TotalPowerAttribute());
+        AttributeRegistry.register(new EnumAttribute<>("deckFaction", AttributeExtractor.Scope.DECK,
+                Faction.class, (card, deck) -> deck.getFaction()));
+        AttributeRegistry.register(new CategoriesAttribute(), "category");
+        AttributeRegistry.register(new DistinctAttribute("distinctCards", AttributeExtractor.Scope.CARD, false));
+        AttributeRegistry.register(new DistinctAttribute(
+                "distinctLeaderAbilities", AttributeExtractor.Scope.DECK, false));
+        AttributeRegistry.register(new DistinctAttribute("exactDistinctCards", AttributeExtractor.Scope.CARD, true));
+        AttributeRegistry.register(new DistinctAttribute(
+                "exactDistinctLeaderAbilities", AttributeExtractor.Scope.DECK, true));
+        AttributeRegistry.register(new DistributionAttribute("totalPowerQuantiles", DeckFacts::getTotalUnitPower));
+        AttributeRegistry.register(new DistributionAttribute(
+                "provisionUsedQuantiles", DeckFacts::getTotalProvisionUsed));
+        AttributeRegistry.register(new DistributionAttribute("cardCountQuantiles", DeckFacts::getCardCount));
+    }
+
+    private static String leaderAbility(DeckFacts deck) {
+        return deck.getLeaderAbility() != null ? deck.getLeaderAbility() : AttributeCounter.UNKNOWN;
+    }
+
+    /**
+     * An enum value, indexed by ordinal; a missing value is {@link AttributeCounter#UNKNOWN}.
+     */
+    private static final class EnumAttribute<E extends Enum<E>> extends AttributeExtractor {
+        private final Class<E> type;
+        private final E[] constants;
+        private final BiFunction<Card, DeckFacts, E> getter;
+
+        EnumAttribute(String name, Scope scope, Class<E> type, BiFunction<Card, DeckFacts, E> getter) {
+            super(name, scope);
+            this.type = type;
+            this.constants = type.getEnumConstants();
+            this.getter = getter;
+        }
+
+        @Override
+        public int getCardinality() {
+            return constants.length + 1;
+        }
+
+        @Override
+        public int index(Card card, DeckFacts deck) {
+            E value = getter.apply(card, deck);
+            return value != null ? value.ordinal() : constants.length;
+        }
+
+        @Override
+        public String label(int index) {
+            return index < constants.length ? constants[index].toString() : AttributeCounter.UNKNOWN;
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            consumer.accept(label(index(card, deck)));
+        }
+
+        @Override
+        AttributeCounter newCounter() {
+            return new EnumCounter<>(type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+            ((EnumCounter<E>) counter).add(getter.apply(card, deck), copies);
+        }
+    }
+
+    /**
+     * A small number on a card; values up to {@link IntCounter#DENSE_LIMIT} are indexed by value,
+     * the last index stands for a missing value.
+     */
+    private abstract static class IntAttribute extends AttributeExtractor {
+        IntAttribute(String name) {
+            super(name, Scope.CARD);
+        }
+
+        abstract boolean isCounted(Card card);
+
+        abstract Integer valueOf(Card card);
+
+        @Override
+        public int getCardinality() {
+            return IntCounter.DENSE_LIMIT + 1;
+        }
+
+        @Override
+        public int index(Card card, DeckFacts deck) {
+            if (!isCounted(card)) {
+                return -1;
+            }
+            Integer value = valueOf(card);
+            if (value == null) {
+                return IntCounter.DENSE_LIMIT;
+            }
+            return value >= 0 && value < IntCounter.DENSE_LIMIT ? value : -1;
+        }
+
+        @Override
+        public String label(int index) {
+            return index < IntCounter.DENSE_LIMIT ? Integer.toString(index) : AttributeCounter.UNKNOWN;
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            if (isCounted(card)) {
+                Integer value = valueOf(card);
+                consumer.accept(value != null ? value.toString() : AttributeCounter.UNKNOWN);
+            }
+        }
+
+        @Override
+        AttributeCounter newCounter() {
+            return new IntCounter();
+        }
+
+        @Override
+        void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+            if (isCounted(card)) {
+                ((IntCounter) counter).add(valueOf(card), copies);
+            }
+        }
+    }
+
+    private static final class LeaderAbilityAttribute extends AttributeExtractor {
+        LeaderAbilityAttribute() {
+            super("leaderAbility", Scope.DECK);
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            consumer.accept(leaderAbility(deck));
+        }
+
+        @Override
+        void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+            counter.add(leaderAbility(deck), copies);
+        }
+    }
+
+    /**
+     * Range of a deck's total unit power.
+     */
+    private static final class TotalPowerAttribute extends AttributeExtractor {
+        TotalPowerAttribute() {
+            super("totalPower", Scope.DECK);
+        }
+
+        @Override
+        public int getCardinality() {
+            return POWER_RANGES.length;
+        }
+
+        @Override
+        public int index(Card card, DeckFacts deck) {
+            int totalPower = deck.getTotalUnitPower();
+            if (totalPower == 0) return 0;
+            if (totalPower <= 50) return 1;
+            if (totalPower <= 100) return 2;
+            if (totalPower <= 150) return 3;
+            if (totalPower <= 200) return 4;
+            return 5;
+        }
+
+        @Override
+        public String label(int index) {
+            return POWER_RANGES[index];
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            consumer.accept(label(index(card, deck)));
+        }
+    }
+
+    private static final class CategoriesAttribute extends AttributeExtractor {
+        CategoriesAttribute() {
+            super("categories", Scope.DECK);
+        }
+
+        @Override
+        public boolean isMultiValued() {
+            return true;
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            Deck.parseCategories(deck.getCategories()).forEach(consumer);
+        }
+    }
+
+    /**
+     * Distinct card names per card faction, or distinct leader abilities per deck faction.
+     */
+    private static final class DistinctAttribute extends AttributeExtractor {
+        private final boolean exact;
+
+        DistinctAttribute(String name, Scope scope, boolean exact) {
+            super(name, scope);
+            this.exact = exact;
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            throw new UnsupportedOperationException(getName() + " counts distinct values");
+        }
+
+        @Override
+        boolean isCountedByValue() {
+            return false;
+        }
+
+        @Override
+        AttributeCounter newCounter() {
+            return new DistinctCounter(exact);
+        }
+
+        @Override
+        void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+            if (getScope() == Scope.DECK) {
+                ((DistinctCounter) counter).add(deck.getFaction(), leaderAbility(deck));
+            } else if (card.getName() != null) {
+                ((DistinctCounter) counter).add(card.getFaction(), card.getName());
+            }
+        }
+    }
+
+    /**
+     * Distribution of a number per deck, like its total unit power.
+     */
+    private static final class DistributionAttribute extends AttributeExtractor {
+        private final ToIntFunction<DeckFacts> metric;
+
+        DistributionAttribute(String name, ToIntFunction<DeckFacts> metric) {
+            super(name, Scope.DECK);
+            this.metric = metric;
+        }
+
+        @Override
+        public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+            consumer.accept(Integer.toString(metric.applyAsInt(deck)));
+        }
+
+        @Override
+        boolean isCountedByValue() {
+            return false;
+        }
+
+        @Override
+        boolean isDistribution() {
+            return true;
+        }
+
+        @Override
+        AttributeCounter newCounter() {
+            return new QuantileCounter(StatisticsAccumulator.DEFAULT_QUANTILE_ACCURACY);
+        }
+
+        @Override
+        void count(AttributeCounter counter, Card card, long copies, DeckFacts deck) {
+            ((QuantileCounter) counter).add(metric.applyAsInt(deck), copies);
+        }
+    }
+}
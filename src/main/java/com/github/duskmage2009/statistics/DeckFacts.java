@@ -0,0 +1,84 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+
+/**
+ * Deck-level values an {@link AttributeExtractor} can read, taken once per deck from a
+ * {@link Deck} or a row of a snapshot, so that the unit power is not summed again for every
+ * attribute. The card count and provision used are only summed when first read.
+ */
+public final class DeckFacts {
+    private Faction faction;
+    private String leaderAbility;
+    private String categories;
+    private int totalUnitPower;
+
+    private Deck deck;
+    private DeckSnapshot snapshot;
+    private int row;
+    private int cardCount;
+    private boolean cardCountKnown;
+    private int totalProvisionUsed;
+    private boolean totalProvisionUsedKnown;
+
+    DeckFacts set(Deck deck, int cardCount, int totalUnitPower) {
+        set(deck.getFaction(), deck.getLeaderAbility(), deck.getCategories(), totalUnitPower);
+        this.deck = deck;
+        this.snapshot = null;
+        this.cardCount = cardCount;
+        this.cardCountKnown = true;
+        return this;
+    }
+
+    DeckFacts set(DeckSnapshot snapshot, int row, int totalUnitPower) {
+        set(snapshot.getDeckFaction(row), snapshot.getLeaderAbility(row), snapshot.getCategories(row),
+                totalUnitPower);
+        this.deck = null;
+        this.snapshot = snapshot;
+        this.row = row;
+        this.cardCountKnown = false;
+        return this;
+    }
+
+    private void set(Faction faction, String leaderAbility, String categories, int totalUnitPower) {
+        this.faction = faction;
+        this.leaderAbility = leaderAbility;
+        this.categories = categories;
+        this.totalUnitPower = totalUnitPower;
+        this.totalProvisionUsedKnown = false;
+    }
+
+    public Faction getFaction() {
+        return faction;
+    }
+
+    public String getLeaderAbility() {
+        return leaderAbility;
+    }
+
+    public String getCategories() {
+        return categories;
+    }
+
+    public int getTotalUnitPower() {
+        return totalUnitPower;
+    }
+
+    public int getCardCount() {
+        if (!cardCountKnown) {
+            cardCount = snapshot.getCardCount(row);
+            cardCountKnown = true;
+        }
+        return cardCount;
+    }
+
+    public int getTotalProvisionUsed() {
+        if (!totalProvisionUsedKnown) {
+            totalProvisionUsed = deck != null ? deck.getTotalProvisionUsed() : snapshot.getTotalProvisionUsed(row);
+            totalProvisionUsedKnown = true;
+        }
+        return totalProvisionUsed;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.model.Faction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts distinct values per faction, either estimated by a {@link HyperLogLog} per faction,
+ * a few KB each regardless of the input, or exactly with a set per faction for validating the
+ * estimates on small inputs. A null faction is its own {@link #UNKNOWN} group. Counters are
+ * merged cheaply, but cannot be subtracted or restored from saved counts.
+ */
+final class DistinctCounter implements AttributeCounter {
+    private static final Faction[] FACTIONS = Faction.values();
+
+    private final boolean exact;
+    // Indexed by faction ordinal, the last one for unknown; created on first use
+    private final HyperLogLog[] sketches = new HyperLogLog[FACTIONS.length + 1];
+    private final List<Set<String>> sets = new ArrayList<>(Collections.nCopies(FACTIONS.length + 1, null));
+
+    DistinctCounter(boolean exact) {
+        this.exact = exact;
+    }
+
+    void add(Faction faction, String value) {
+        int group = faction != null ? faction.ordinal() : FACTIONS.length;
+        if (exact) {
+            if (sets.get(group) == null) {
+                sets.set(group, new HashSet<>());
+            }
+            sets.get(group).add(value);
+        } else {
+            if (sketches[group] == null) {
+                sketches[group] = new HyperLogLog();
+            }
+            sketches[group].add(value);
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, since a distinct count cannot be rebuilt from a number
+     */
+    @Override
+    public void add(String value, long count) {
+        throw new UnsupportedOperationException("Distinct counts cannot be restored from saved counts");
+    }
+
+    /**
+     * @throws UnsupportedOperationException if asked to subtract
+     */
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        if (sign != 1) {
+            throw new UnsupportedOperationException("Distinct counts cannot be subtracted");
+        }
+        DistinctCounter counter = (DistinctCounter) other;
+        for (int group = 0; group <= FACTIONS.length; group++) {
+            if (counter.sketches[group] != null) {
+                if (sketches[group] == null) {
+                    sketches[group] = new HyperLogLog();
+                }
+                sketches[group].merge(counter.sketches[group]);
+            }
+            if (counter.sets.get(group) != null) {
+                if (sets.get(group) == null) {
+                    sets.set(group, new HashSet<>());
+                }
+                sets.get(group).addAll(counter.sets.get(group));
+            }
+        }
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int group = 0; group <= FACTIONS.length; group++) {
+            long count = exact
+                    ? (sets.get(group) != null ? sets.get(group).size() : 0)
+                    : (sketches[group] != null ? sketches[group].estimate() : 0);
+            if (count != 0) {
+                consumer.accept(group < FACTIONS.length ? FACTIONS[group].toString() : UNKNOWN, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts the values of an enum attribute in an array indexed by ordinal; null is counted
+ * as {@link #UNKNOWN}.
+ */
+final class EnumCounter<E extends Enum<E>> implements AttributeCounter {
+    private final E[] constants;
+    private final long[] counts;
+    private long unknownCount;
+
+    EnumCounter(Class<E> type) {
+        this.constants = type.getEnumConstants();
+        this.counts = new long[constants.length];
+    }
+
+    void add(E value, long count) {
+        if (value == null) {
+            unknownCount += count;
+        } else {
+            counts[value.ordinal()] += count;
+        }
+    }
+
+    @Override
+    public void add(String value, long count) {
+        for (E constant : constants) {
+            if (constant.toString().equals(value)) {
+                counts[constant.ordinal()] += count;
+                return;
+            }
+        }
+        unknownCount += count;
+    }
+
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        EnumCounter<?> counter = (EnumCounter<?>) other;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += sign * counter.counts[i];
+        }
+        unknownCount += sign * counter.unknownCount;
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(constants[i].toString(), counts[i]);
+            }
+        }
+        if (unknownCount != 0) {
+            consumer.accept(UNKNOWN, unknownCount);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.duskmage2009.statistics;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct strings added to it in a fixed
+ * {@value #REGISTER_COUNT} bytes, with a standard error of about 1.6%. Sketches are merged by
+ * taking the register-wise maximum, which gives the same estimate as one sketch that saw both inputs.
+ */
+final class HyperLogLog {
+    private static final int PRECISION = 12;
+    static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+
+    void add(String value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Position of the first one bit in the remaining bits; all zeros count as one past the end
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), Long.SIZE - PRECISION) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            // Linear counting is more accurate while many registers are still empty
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters followed by the MurmurHash3 finalizer, since the
+     * sketch needs all 64 bits well mixed and {@link String#hashCode()} has only 32.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
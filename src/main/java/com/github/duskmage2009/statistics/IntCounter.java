@@ -0,0 +1,69 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts the values of an integer attribute: small non-negative values, which cover every
+ * provision and power in the game, in a dense array, the rest in a spill map. Null is counted
+ * as {@link #UNKNOWN}.
+ */
+final class IntCounter implements AttributeCounter {
+    static final int DENSE_LIMIT = 32;
+
+    private final long[] counts = new long[DENSE_LIMIT];
+    private final ObjectLongHashMap<Integer> spill = new ObjectLongHashMap<>();
+    private long unknownCount;
+
+    void add(Integer value, long count) {
+        if (value == null) {
+            unknownCount += count;
+        } else if (value >= 0 && value < DENSE_LIMIT) {
+            counts[value] += count;
+        } else {
+            spill.addTo(value, count);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is neither a number nor {@link #UNKNOWN}
+     */
+    @Override
+    public void add(String value, long count) {
+        if (UNKNOWN.equals(value)) {
+            unknownCount += count;
+            return;
+        }
+        try {
+            add(Integer.valueOf(value), count);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value, e);
+        }
+    }
+
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        IntCounter counter = (IntCounter) other;
+        for (int i = 0; i < DENSE_LIMIT; i++) {
+            counts[i] += sign * counter.counts[i];
+        }
+        counter.spill.forEach((value, count) -> spill.addTo(value, sign * count));
+        unknownCount += sign * counter.unknownCount;
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < DENSE_LIMIT; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(Integer.toString(i), counts[i]);
+            }
+        }
+        spill.forEach((value, count) -> {
+            if (count != 0) {
+                consumer.accept(value.toString(), count);
+            }
+        });
+        if (unknownCount != 0) {
+            consumer.accept(UNKNOWN, unknownCount);
+        }
+    }
+}
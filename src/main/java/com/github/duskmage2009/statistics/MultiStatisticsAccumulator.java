@@ -0,0 +1,200 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.Deck;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Statistics for several attributes at once. Every deck is traversed a single time: its totals
+ * are computed once and its cards are walked once for all card attributes together, instead of
+ * once per attribute. An attribute naming several dimensions, like {@code faction+type}, is
+ * counted as a {@link StatisticsCube} in the same pass.
+ * <p>
+ * Not thread-safe, like {@link StatisticsAccumulator}; partial results are combined with
+ * {@link #merge(MultiStatisticsAccumulator)}.
+ */
+public class MultiStatisticsAccumulator implements Consumer<Deck> {
+    /**
+     * Stands for every attribute in {@link StatisticsAccumulator#ATTRIBUTES}.
+     */
+    public static final String ALL_ATTRIBUTES = "all";
+
+    private final List<StatisticsAccumulator> accumulators = new ArrayList<>();
+    private final List<StatisticsAccumulator> cardAccumulators = new ArrayList<>();
+    private final List<StatisticsAccumulator> deckAccumulators = new ArrayList<>();
+    private final List<StatisticsCube> cubes = new ArrayList<>();
+    private final DeckFacts facts = new DeckFacts();
+
+    /**
+     * @throws IllegalArgumentException if an attribute is not supported or none is given
+     */
+    public MultiStatisticsAccumulator(List<String> attributes) {
+        this(attributes, 0);
+    }
+
+    /**
+     * Counts free-text attributes approximately and reports their top K values if {@code topK}
+     * is positive, see {@link StatisticsAccumulator#StatisticsAccumulator(String, int)}.
+     *
+     * @throws IllegalArgumentException if an attribute is not supported or none is given
+     */
+    public MultiStatisticsAccumulator(List<String> attributes, int topK) {
+        this(attributes, topK, StatisticsAccumulator.DEFAULT_QUANTILE_ACCURACY);
+    }
+
+    /**
+     * Also sets the relative accuracy of the quantiles of distribution attributes,
+     * see {@link StatisticsAccumulator#StatisticsAccumulator(String, int, double)}.
+     *
+     * @throws IllegalArgumentException if an attribute is not supported or none is given
+     */
+    public MultiStatisticsAccumulator(List<String> attributes, int topK, double quantileAccuracy) {
+        Set<String> keys = new HashSet<>();
+        for (String attribute : attributes) {
+            if (StatisticsCube.isCube(attribute)) {
+                StatisticsCube cube = new StatisticsCube(StatisticsCube.parseDimensions(attribute));
+                if (keys.add(cube.getName())) {
+                    cubes.add(cube);
+                }
+                continue;
+            }
+            StatisticsAccumulator accumulator = new StatisticsAccumulator(attribute, topK, quantileAccuracy);
+            // Different spellings of one attribute are counted once
+            if (keys.add(accumulator.getKey())) {
+                accumulators.add(accumulator);
+                (accumulator.isCardAttribute() ? cardAccumulators : deckAccumulators).add(accumulator);
+            }
+        }
+        if (accumulators.isEmpty() && cubes.isEmpty()) {
+            throw new IllegalArgumentException("No attribute given\nSupported: "
+                    + String.join(", ", AttributeRegistry.getNames()) + ", " + ALL_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Parses an attribute argument: {@value #ALL_ATTRIBUTES}, a single attribute, or a
+     * comma-separated list of attributes. The attributes themselves are validated by the constructor.
+     */
+    public static List<String> parseAttributes(String argument) {
+        if (argument.trim().equalsIgnoreCase(ALL_ATTRIBUTES)) {
+            return StatisticsAccumulator.ATTRIBUTES;
+        }
+        List<String> attributes = new ArrayList<>();
+        for (String attribute : argument.split(",")) {
+            if (!attribute.isBlank()) {
+                attributes.add(attribute.trim());
+            }
+        }
+        return attributes;
+    }
+
+    @Override
+    public void accept(Deck deck) {
+        int cardCount = deck.getCardCount();
+        int unitPower = deck.getTotalUnitPower();
+        for (StatisticsAccumulator accumulator : accumulators) {
+            accumulator.countTotals(cardCount, unitPower);
+        }
+        DeckFacts deckFacts = facts.set(deck, cardCount, unitPower);
+
+        if (!cardAccumulators.isEmpty() || !cubes.isEmpty()) {
+            List<CardCopies> cardCopies = deck.getCardCopies();
+            if (cardCopies != null) {
+                for (CardCopies entry : cardCopies) {
+                    for (StatisticsAccumulator accumulator : cardAccumulators) {
+                        accumulator.countCard(entry.getCard(), entry.getCopies(), deckFacts);
+                    }
+                    for (StatisticsCube cube : cubes) {
+                        if (cube.isCardLevel()) {
+                            cube.countCard(entry.getCard(), entry.getCopies(), deckFacts);
+                        }
+                    }
+                }
+            }
+        }
+        for (StatisticsAccumulator accumulator : deckAccumulators) {
+            accumulator.countDeck(deckFacts);
+        }
+        for (StatisticsCube cube : cubes) {
+            cube.countTotals(cardCount, unitPower);
+            if (!cube.isCardLevel()) {
+                cube.countDeck(deckFacts);
+            }
+        }
+    }
+
+    /**
+     * Counts every deck of a snapshot; the snapshot is columnar, so each attribute reads its own columns.
+     */
+    public void accept(DeckSnapshot snapshot) {
+        for (StatisticsAccumulator accumulator : accumulators) {
+            accumulator.accept(snapshot);
+        }
+        for (StatisticsCube cube : cubes) {
+            cube.accept(snapshot);
+        }
+    }
+
+    /**
+     * Adds the counters of another accumulator for the same attributes to this one.
+     */
+    public MultiStatisticsAccumulator merge(MultiStatisticsAccumulator other) {
+        if (accumulators.size() != other.accumulators.size() || cubes.size() != other.cubes.size()) {
+            throw new IllegalArgumentException("Cannot merge statistics for different attributes");
+        }
+        for (int i = 0; i < accumulators.size(); i++) {
+            accumulators.get(i).merge(other.accumulators.get(i));
+        }
+        for (int i = 0; i < cubes.size(); i++) {
+            cubes.get(i).merge(other.cubes.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Returns the statistics of every attribute, in the order the attributes were given.
+     */
+    public List<StatisticsAccumulator> getAccumulators() {
+        return accumulators;
+    }
+
+    /**
+     * Returns the statistics for one attribute, in any of its spellings.
+     *
+     * @throws IllegalArgumentException if the attribute was not counted
+     */
+    public StatisticsAccumulator getAccumulator(String attribute) {
+        String key = new StatisticsAccumulator(attribute).getKey();
+        for (StatisticsAccumulator accumulator : accumulators) {
+            if (accumulator.getKey().equals(key)) {
+                return accumulator;
+            }
+        }
+        throw new IllegalArgumentException("No statistics for " + attribute);
+    }
+
+    /**
+     * Returns the cubes, in the order they were given.
+     */
+    public List<StatisticsCube> getCubes() {
+        return cubes;
+    }
+
+    public long getDeckCount() {
+        return accumulators.isEmpty() ? cubes.get(0).getDeckCount() : accumulators.get(0).getDeckCount();
+    }
+
+    public long getCardCount() {
+        return accumulators.isEmpty() ? cubes.get(0).getCardCount() : accumulators.get(0).getCardCount();
+    }
+
+    public long getTotalUnitPower() {
+        return accumulators.isEmpty() ? cubes.get(0).getTotalUnitPower() : accumulators.get(0).getTotalUnitPower();
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash map from objects to primitive {@code long} values with open addressing and linear probing,
+ * so incrementing a count allocates nothing once the key is present. Keys cannot be removed and
+ * null keys are not allowed; a key whose value dropped to zero simply stays with value zero.
+ */
+class ObjectLongHashMap<K> {
+    private static final int MIN_CAPACITY = 16;
+
+    private Object[] keys;
+    private long[] values;
+    private int size;
+
+    ObjectLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    ObjectLongHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        keys = new Object[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * Adds a delta to the key's value, inserting the key with value zero first if it is missing.
+     */
+    void addTo(K key, long delta) {
+        int slot = slot(key);
+        if (keys[slot] == null) {
+            keys[slot] = key;
+            if (++size > keys.length * 3 / 4) {
+                values[slot] = delta;
+                grow();
+                return;
+            }
+        }
+        values[slot] += delta;
+    }
+
+    /**
+     * Returns the key's value, or zero if it is missing.
+     */
+    long get(K key) {
+        int slot = slot(key);
+        return keys[slot] == null ? 0 : values[slot];
+    }
+
+    /**
+     * Number of keys, including those whose value is zero.
+     */
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(ObjLongConsumer<K> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept((K) keys[i], values[i]);
+            }
+        }
+    }
+
+    private int slot(Object key) {
+        int mask = keys.length - 1;
+        int hash = key.hashCode();
+        // Spreads the high bits, since only the low bits pick the slot
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
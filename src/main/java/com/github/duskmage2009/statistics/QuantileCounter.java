@@ -0,0 +1,151 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Streaming distribution of a whole-number metric in a log-bucketed histogram: bucket {@code i}
+ * counts the values in (gamma<sup>i-1</sup>, gamma<sup>i</sup>] with gamma = (1 + a) / (1 - a),
+ * so every quantile is reported within a relative error of the accuracy a, before rounding to a
+ * whole number. The number of buckets grows with the logarithm of the largest value only, about
+ * 1100 for values up to {@link Integer#MAX_VALUE} at 1%, however many values are added.
+ * Values below 1 share one bucket and are reported as 0; the minimum and maximum are exact.
+ * <p>
+ * Histograms with the same accuracy are merged by adding their buckets, which gives the same
+ * quantiles as one histogram that saw both inputs. They cannot be subtracted, since the
+ * minimum and maximum could not be restored, or restored from saved counts.
+ */
+final class QuantileCounter implements AttributeCounter {
+    /**
+     * Quantiles reported besides the count, minimum and maximum.
+     */
+    static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_LABELS = {"p50", "p90", "p99"};
+
+    private final double accuracy;
+    private final double gamma;
+    private final double logGamma;
+    private long[] buckets = new long[16];
+    private long belowOneCount;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * @param accuracy relative accuracy of the quantiles, at least
+     *                 {@link StatisticsAccumulator#MIN_QUANTILE_ACCURACY} and below 1
+     */
+    QuantileCounter(double accuracy) {
+        checkAccuracy(accuracy);
+        this.accuracy = accuracy;
+        this.gamma = (1 + accuracy) / (1 - accuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the accuracy is below {@link StatisticsAccumulator#MIN_QUANTILE_ACCURACY},
+     *                                  where the buckets would take too much memory, or not below 1
+     */
+    static void checkAccuracy(double accuracy) {
+        if (!(accuracy >= StatisticsAccumulator.MIN_QUANTILE_ACCURACY && accuracy < 1)) {
+            throw new IllegalArgumentException("Quantile accuracy must be at least "
+                    + StatisticsAccumulator.MIN_QUANTILE_ACCURACY + " and below 1: " + accuracy);
+        }
+    }
+
+    void add(long value, long copies) {
+        count += copies;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value < 1) {
+            belowOneCount += copies;
+            return;
+        }
+        int bucket = (int) Math.ceil(Math.log(value) / logGamma);
+        if (bucket >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(bucket + 1, buckets.length * 2));
+        }
+        buckets[bucket] += copies;
+    }
+
+    /**
+     * Returns the value at the given quantile, e.g. 0.9 for the value 90% of the values are at most.
+     */
+    long quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        double rank = quantile * (count - 1);
+        long seen = belowOneCount;
+        if (seen > rank) {
+            return clamp(0);
+        }
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen > rank) {
+                // The value with the same relative distance to both ends of the bucket
+                return clamp(Math.round(2 * Math.pow(gamma, bucket) / (gamma + 1)));
+            }
+        }
+        return max;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @throws UnsupportedOperationException always, since a distribution cannot be rebuilt from its quantiles
+     */
+    @Override
+    public void add(String value, long count) {
+        throw new UnsupportedOperationException("Distributions cannot be restored from saved counts");
+    }
+
+    /**
+     * @throws UnsupportedOperationException if asked to subtract
+     * @throws IllegalArgumentException      if the other histogram has a different accuracy
+     */
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        if (sign != 1) {
+            throw new UnsupportedOperationException("Distributions cannot be subtracted");
+        }
+        QuantileCounter counter = (QuantileCounter) other;
+        if (counter.accuracy != accuracy) {
+            throw new IllegalArgumentException(
+                    "Cannot merge distributions with accuracy " + counter.accuracy + " and " + accuracy);
+        }
+        if (counter.buckets.length > buckets.length) {
+            buckets = Arrays.copyOf(buckets, counter.buckets.length);
+        }
+        for (int bucket = 0; bucket < counter.buckets.length; bucket++) {
+            buckets[bucket] += counter.buckets[bucket];
+        }
+        belowOneCount += counter.belowOneCount;
+        count += counter.count;
+        min = Math.min(min, counter.min);
+        max = Math.max(max, counter.max);
+    }
+
+    /**
+     * Passes the count, the minimum, the {@link #QUANTILES} and the maximum, in that order;
+     * nothing if no value was added.
+     */
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        if (count == 0) {
+            return;
+        }
+        consumer.accept("count", count);
+        consumer.accept("min", min);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            consumer.accept(QUANTILE_LABELS[i], quantile(QUANTILES[i]));
+        }
+        consumer.accept("max", max);
+    }
+
+    private long clamp(long value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
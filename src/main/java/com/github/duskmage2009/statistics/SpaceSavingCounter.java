@@ -0,0 +1,172 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Approximate counter for attributes with too many distinct values to count exactly, using the
+ * Space-Saving algorithm: at most {@code capacity} values are monitored, and a new value replaces
+ * the one with the lowest count, inheriting that count as its possible overestimation.
+ * <p>
+ * Every reported count is at most its {@link #getError(String) error} above the true count, and
+ * a value that is not reported occurred at most {@link #getUnmonitoredBound()} times, which is at
+ * most the total count divided by the capacity. So every value occurring more often than that
+ * is reported. Counters are merged as described by Agarwal et al., "Mergeable Summaries", which
+ * keeps both guarantees; they cannot be subtracted.
+ */
+final class SpaceSavingCounter implements AttributeCounter {
+    private final int capacity;
+    private final String[] values;
+    // Min-heap by count, so the value to replace is always at the root
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<String, Integer> positions;
+    private int size;
+    private long total;
+
+    SpaceSavingCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.values = new String[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    @Override
+    public void add(String value, long count) {
+        total += count;
+        Integer position = positions.get(value);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+        } else if (size < capacity) {
+            set(size, value, count, 0);
+            siftUp(size++);
+        } else {
+            positions.remove(values[0]);
+            set(0, value, counts[0] + count, counts[0]);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException if asked to subtract
+     */
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        if (sign != 1) {
+            throw new UnsupportedOperationException("Approximate counts cannot be subtracted");
+        }
+        SpaceSavingCounter counter = (SpaceSavingCounter) other;
+        long ownBound = getUnmonitoredBound();
+        long otherBound = counter.getUnmonitoredBound();
+
+        // A value missing from one side may have occurred there up to that side's bound
+        Map<String, long[]> merged = new HashMap<>((size + counter.size) * 2);
+        for (int i = 0; i < size; i++) {
+            merged.put(values[i], new long[]{counts[i] + otherBound, errors[i] + otherBound});
+        }
+        for (int i = 0; i < counter.size; i++) {
+            long[] entry = merged.get(counter.values[i]);
+            if (entry == null) {
+                merged.put(counter.values[i],
+                        new long[]{counter.counts[i] + ownBound, counter.errors[i] + ownBound});
+            } else {
+                entry[0] += counter.counts[i] - otherBound;
+                entry[1] += counter.errors[i] - otherBound;
+            }
+        }
+
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0]).reversed()
+                .thenComparing(Map.Entry::getKey));
+        positions.clear();
+        size = 0;
+        for (Map.Entry<String, long[]> entry : entries.subList(0, Math.min(capacity, entries.size()))) {
+            set(size, entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            siftUp(size++);
+        }
+        total += counter.total;
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(values[i], counts[i]);
+        }
+    }
+
+    /**
+     * Returns how much the reported count of a value may exceed its true count.
+     */
+    long getError(String value) {
+        Integer position = positions.get(value);
+        return position != null ? errors[position] : getUnmonitoredBound();
+    }
+
+    /**
+     * Returns the most a value that is not reported may have occurred; zero while fewer values
+     * than the capacity were seen, since then every count is exact.
+     */
+    long getUnmonitoredBound() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    /**
+     * Number of values currently monitored.
+     */
+    int size() {
+        return size;
+    }
+
+    private void set(int position, String value, long count, long error) {
+        values[position] = value;
+        counts[position] = count;
+        errors[position] = error;
+        positions.put(value, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (left + 1 < size && counts[left + 1] < counts[smallest]) {
+                smallest = left + 1;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int first, int second) {
+        String value = values[first];
+        long count = counts[first];
+        long error = errors[first];
+        set(first, values[second], counts[second], errors[second]);
+        set(second, value, count, error);
+    }
+}
@@ -0,0 +1,371 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.Deck;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Incremental counterpart of {@link StatisticsCalculator}.
+ * Decks are folded into the counters one at a time and can be dropped right after,
+ * so memory is bounded by the number of distinct values instead of the number of decks.
+ * <p>
+ * Not thread-safe: every worker should fill its own instance and the partial
+ * results should be combined with {@link #merge(StatisticsAccumulator)}.
+ */
+public class StatisticsAccumulator implements Consumer<Deck> {
+    /**
+     * Every attribute statistics can be calculated for.
+     */
+    public static final List<String> ATTRIBUTES = List.of(
+            "faction", "type", "provision", "power", "leaderAbility", "totalPower", "deckFaction", "categories");
+
+    /**
+     * Attributes counting distinct values per faction: card names by card faction and leader
+     * abilities by deck faction. They are estimated with HyperLogLog; the {@code exact} spellings
+     * count them exactly, for validating the estimates on small inputs.
+     */
+    public static final List<String> DISTINCT_ATTRIBUTES = List.of(
+            "distinctCards", "distinctLeaderAbilities", "exactDistinctCards", "exactDistinctLeaderAbilities");
+
+    /**
+     * Attributes reporting the distribution of a number per deck: its count, minimum, p50, p90,
+     * p99 and maximum. The quantiles come from a log-bucketed histogram of constant size, within
+     * a relative error of the accuracy the statistics are created with.
+     */
+    public static final List<String> QUANTILE_ATTRIBUTES = List.of(
+            "totalPowerQuantiles", "provisionUsedQuantiles", "cardCountQuantiles");
+
+    /**
+     * Relative accuracy of the quantiles unless another one is given.
+     */
+    public static final double DEFAULT_QUANTILE_ACCURACY = 0.01;
+
+    /**
+     * Finest relative accuracy of the quantiles. The histogram needs about ln(max) / (2 * accuracy)
+     * buckets, around 860 KB for values up to {@link Integer#MAX_VALUE} at this accuracy, and every
+     * per-file partial has its own.
+     */
+    public static final double MIN_QUANTILE_ACCURACY = 1e-4;
+
+    /**
+     * In top-K mode the sketch of a free-text attribute monitors this many values per value reported.
+     */
+    public static final int SKETCH_VALUES_PER_TOP_VALUE = 10;
+
+    private final String attribute;
+    private final AttributeExtractor extractor;
+    private final String key;
+    private final int topK;
+    private final AttributeCounter counts;
+    private final DeckFacts facts = new DeckFacts();
+
+    private long deckCount;
+    private long cardCount;
+    private long totalUnitPower;
+
+    public StatisticsAccumulator(String attribute) {
+        this(attribute, 0);
+    }
+
+    /**
+     * Creates an accumulator that, if {@code topK} is positive and the attribute is free text
+     * (leader ability or categories), counts approximately in a sketch of fixed size and reports
+     * only the {@code topK} most frequent values, with error bounds. Other attributes have few
+     * distinct values and are always counted exactly.
+     *
+     * @throws IllegalArgumentException if the attribute is not in the {@link AttributeRegistry}
+     */
+    public StatisticsAccumulator(String attribute, int topK) {
+        this(attribute, topK, DEFAULT_QUANTILE_ACCURACY);
+    }
+
+    /**
+     * Like {@link #StatisticsAccumulator(String, int)}, with the relative accuracy of the quantiles
+     * if the attribute is one of the {@link #QUANTILE_ATTRIBUTES}.
+     *
+     * @throws IllegalArgumentException if the attribute is not in the {@link AttributeRegistry}
+     *                                  or the accuracy is not at least {@link #MIN_QUANTILE_ACCURACY} and below 1
+     */
+    public StatisticsAccumulator(String attribute, int topK, double quantileAccuracy) {
+        if (topK < 0) {
+            throw new IllegalArgumentException("Top K must not be negative: " + topK);
+        }
+        this.attribute = attribute;
+        this.extractor = AttributeRegistry.get(attribute);
+        this.key = AttributeRegistry.key(extractor.getName());
+        this.topK = topK;
+        // Free-text values are unbounded; the others have few values and stay exact
+        boolean freeText = extractor.getCardinality() == 0 && extractor.isCountedByValue();
+        if (topK > 0 && freeText) {
+            this.counts = new SpaceSavingCounter(Math.multiplyExact(topK, SKETCH_VALUES_PER_TOP_VALUE));
+        } else if (extractor.isDistribution()) {
+            this.counts = new QuantileCounter(quantileAccuracy);
+        } else {
+            this.counts = extractor.newCounter();
+        }
+    }
+
+    /**
+     * Restores an accumulator from counters saved earlier, e.g. the cached partial result of one file.
+     *
+     * @throws UnsupportedOperationException if the attribute is not {@link #isCacheable() cacheable}
+     */
+    public StatisticsAccumulator(String attribute, Map<String, Long> counts,
+                                 long deckCount, long cardCount, long totalUnitPower) {
+        this(attribute);
+        counts.forEach(this.counts::add);
+        this.deckCount = deckCount;
+        this.cardCount = cardCount;
+        this.totalUnitPower = totalUnitPower;
+    }
+
+    @Override
+    public void accept(Deck deck) {
+        int cardCount = deck.getCardCount();
+        int unitPower = deck.getTotalUnitPower();
+        countTotals(cardCount, unitPower);
+
+        if (isCardAttribute()) {
+            // Identical consecutive cards are one entry, so each is counted once weighted by its copies
+            List<CardCopies> cardCopies = deck.getCardCopies();
+            if (cardCopies != null) {
+                DeckFacts deckFacts = facts.set(deck, cardCount, unitPower);
+                for (CardCopies entry : cardCopies) {
+                    countCard(entry.getCard(), entry.getCopies(), deckFacts);
+                }
+            }
+        } else {
+            countDeck(facts.set(deck, cardCount, unitPower));
+        }
+    }
+
+    /**
+     * Counts every deck of a snapshot straight from its columns, without rebuilding the decks.
+     * Card attributes are counted once per distinct card, weighted by its copies over all decks.
+     */
+    public void accept(DeckSnapshot snapshot) {
+        long[] cardWeights = snapshot.getCardWeights();
+        for (int cardId = 0; cardId < cardWeights.length; cardId++) {
+            cardCount += cardWeights[cardId];
+            if (isCardAttribute() && cardWeights[cardId] > 0) {
+                countCard(snapshot.getCard(cardId), cardWeights[cardId], null);
+            }
+        }
+
+        for (int deck = 0; deck < snapshot.getDeckCount(); deck++) {
+            deckCount++;
+            int unitPower = snapshot.getTotalUnitPower(deck);
+            totalUnitPower += unitPower;
+            if (!isCardAttribute()) {
+                countDeck(facts.set(snapshot, deck, unitPower));
+            }
+        }
+    }
+
+    /**
+     * Adds the counters of another accumulator for the same attribute to this one.
+     */
+    public void merge(StatisticsAccumulator other) {
+        if (!key.equals(other.key)) {
+            throw new IllegalArgumentException(
+                    "Cannot merge statistics for " + other.attribute + " into " + attribute);
+        }
+        if (isApproximate() != other.isApproximate()) {
+            throw new IllegalArgumentException("Cannot merge approximate and exact statistics for " + attribute);
+        }
+        counts.addAll(other.counts, 1);
+        deckCount += other.deckCount;
+        cardCount += other.cardCount;
+        totalUnitPower += other.totalUnitPower;
+    }
+
+    /**
+     * Removes the counters of an accumulator that was merged into this one earlier,
+     * e.g. the old contribution of a file that was modified or deleted.
+     * Values whose count drops to zero disappear from the statistics.
+     *
+     * @throws UnsupportedOperationException if the statistics are {@link #isApproximate() approximate}
+     *                                       or not {@link #isCacheable() cacheable}
+     */
+    public void subtract(StatisticsAccumulator other) {
+        if (!key.equals(other.key)) {
+            throw new IllegalArgumentException(
+                    "Cannot subtract statistics for " + other.attribute + " from " + attribute);
+        }
+        counts.addAll(other.counts, -1);
+        deckCount -= other.deckCount;
+        cardCount -= other.cardCount;
+        totalUnitPower -= other.totalUnitPower;
+    }
+
+    /**
+     * Returns the counted values sorted by count, highest first; if {@link #isApproximate() approximate},
+     * only the top K values with their estimated counts. A {@link #isDistribution() distribution} is
+     * returned in order: count, min, p50, p90, p99, max.
+     */
+    public Map<String, Long> getStatistics() {
+        return getStatistics(0);
+    }
+
+    /**
+     * Like {@link #getStatistics()}, keeping only the {@code top} values with the highest counts,
+     * equal counts ordered by value. They are selected with a heap of that size instead of sorting
+     * every value. 0 keeps every value; a distribution is always returned whole.
+     */
+    public Map<String, Long> getStatistics(int top) {
+        if (top < 0) {
+            throw new IllegalArgumentException("Top must not be negative: " + top);
+        }
+        if (isDistribution()) {
+            Map<String, Long> distribution = new LinkedHashMap<>();
+            counts.forEach(distribution::put);
+            return distribution;
+        }
+        int limit = reportedLimit(top);
+        if (limit > 0) {
+            TopValues<String> values = new TopValues<>(limit, Comparator.naturalOrder());
+            counts.forEach(values::offer);
+            return values.toMap();
+        }
+        Map<String, Long> statistics = new HashMap<>();
+        counts.forEach(statistics::put);
+        return StatisticsCalculator.sortByCount(statistics);
+    }
+
+    /**
+     * True if the values are counted by a sketch, so that counts are estimates.
+     */
+    public boolean isApproximate() {
+        return counts instanceof SpaceSavingCounter;
+    }
+
+    /**
+     * True if the statistics count distinct values per faction. These can be merged but not
+     * subtracted or restored from saved counts, so they are not cached per file.
+     */
+    public boolean isDistinctCount() {
+        return counts instanceof DistinctCounter;
+    }
+
+    /**
+     * True if the statistics are the distribution of a number per deck, see {@link #QUANTILE_ATTRIBUTES}.
+     */
+    public boolean isDistribution() {
+        return counts instanceof QuantileCounter;
+    }
+
+    /**
+     * True if the counts can be restored from saved counts and subtracted, which caching them per
+     * file needs; false for distinct counts and distributions, which can only be merged.
+     */
+    public boolean isCacheable() {
+        return !isDistinctCount() && !isDistribution();
+    }
+
+    /**
+     * Returns, for every value of {@link #getStatistics()}, how much its count may exceed the true count;
+     * empty if the statistics are exact.
+     */
+    public Map<String, Long> getErrorBounds() {
+        return getErrorBounds(0);
+    }
+
+    /**
+     * Like {@link #getErrorBounds()} for the values of {@link #getStatistics(int)}.
+     */
+    public Map<String, Long> getErrorBounds(int top) {
+        Map<String, Long> errors = new LinkedHashMap<>();
+        if (counts instanceof SpaceSavingCounter sketch) {
+            getStatistics(top).keySet().forEach(value -> errors.put(value, sketch.getError(value)));
+        }
+        return errors;
+    }
+
+    /**
+     * Returns how often a value missing from {@link #getStatistics()} may have occurred
+     * at most; zero if the statistics are exact.
+     */
+    public long getErrorBound() {
+        return getErrorBound(0);
+    }
+
+    /**
+     * Like {@link #getErrorBound()} for the values of {@link #getStatistics(int)}.
+     */
+    public long getErrorBound(int top) {
+        if (!(counts instanceof SpaceSavingCounter sketch)) {
+            return 0;
+        }
+        int limit = reportedLimit(top);
+        if (sketch.size() <= limit) {
+            return sketch.getUnmonitoredBound();
+        }
+        // Monitored values below the reported ones are bounded by their estimates, the highest of which comes next
+        TopValues<String> values = new TopValues<>(limit + 1, Comparator.naturalOrder());
+        counts.forEach(values::offer);
+        long nextEstimate = 0;
+        for (long count : values.toMap().values()) {
+            nextEstimate = count;
+        }
+        return nextEstimate;
+    }
+
+    /**
+     * Number of values reported for a requested {@code top}, at most K if approximate; 0 for all.
+     */
+    private int reportedLimit(int top) {
+        if (isApproximate()) {
+            return top > 0 ? Math.min(top, topK) : topK;
+        }
+        return top;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Normalized attribute name, the same for every spelling and alias of the attribute.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public long getDeckCount() {
+        return deckCount;
+    }
+
+    public long getCardCount() {
+        return cardCount;
+    }
+
+    public long getTotalUnitPower() {
+        return totalUnitPower;
+    }
+
+    void countTotals(int deckCardCount, int deckUnitPower) {
+        deckCount++;
+        cardCount += deckCardCount;
+        totalUnitPower += deckUnitPower;
+    }
+
+    boolean isCardAttribute() {
+        return extractor.getScope() == AttributeExtractor.Scope.CARD;
+    }
+
+    void countCard(Card card, long copies, DeckFacts deck) {
+        extractor.count(counts, card, copies, deck);
+    }
+
+    void countDeck(DeckFacts deck) {
+        extractor.count(counts, null, 1, deck);
+    }
+}
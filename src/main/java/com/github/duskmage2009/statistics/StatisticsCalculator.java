@@ -1,185 +1,214 @@
 package com.github.duskmage2009.statistics;
 
-import com.github.duskmage2009.model.Card;
-import com.github.duskmage2009.model.CardType;
+import com.github.duskmage2009.cache.DeckSnapshot;
 import com.github.duskmage2009.model.Deck;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class StatisticsCalculator {
     private static final Logger log = LoggerFactory.getLogger(StatisticsCalculator.class);
 
-    public Map<String, Integer> calculateStatistics(List<Deck> decks, String attribute) {
-        log.info("Calculating statistics for attribute: {}", attribute);
-
-        Map<String, Integer> statistics = switch (attribute.toLowerCase()) {
-            case "faction" -> calculateFactionStatistics(decks);
-            case "type", "cardtype" -> calculateTypeStatistics(decks);
-            case "provision" -> calculateProvisionStatistics(decks);
-            case "power" -> calculatePowerStatistics(decks);
-            case "leaderability" -> calculateLeaderAbilityStatistics(decks);
-            case "totalpower" -> calculateTotalPowerStatistics(decks);
-            case "deckfaction" -> calculateDeckFactionStatistics(decks);
-            case "categories", "category" -> calculateCategoriesStatistics(decks);
-            default -> throw new IllegalArgumentException(
-                    "Unsupported attribute: " + attribute +
-                            "\nSupported: faction, type, provision, power, leaderAbility, totalPower, deckFaction, categories"
-            );
-        };
-
-        Map<String, Integer> sortedStatistics = statistics.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
+    /**
+     * Smallest number of decks a parallel worker counts on its own; below twice this
+     * a list is counted sequentially.
+     */
+    static final int MIN_SPLIT_DECKS = 2048;
 
-        log.info("Statistics calculated: {} unique values", sortedStatistics.size());
-        return sortedStatistics;
-    }
+    /**
+     * Leaves per worker, so that a worker finishing early can steal remaining work.
+     */
+    private static final int SPLITS_PER_WORKER = 4;
 
-    private Map<String, Integer> calculateFactionStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
+    /**
+     * One pool per parallelism, shared by every calculator, so threads are not started for every
+     * calculation. Fork-join workers are daemon threads that end after a while without work.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
 
-        for (Deck deck : decks) {
-            for (Card card : deck.getCards()) {
-                String faction = card.getFaction() != null ?
-                        card.getFaction().toString() : "UNKNOWN";
-                stats.merge(faction, 1, Integer::sum);
-            }
-        }
+    private final int parallelism;
 
-        return stats;
+    public StatisticsCalculator() {
+        this(1);
     }
 
-    private Map<String, Integer> calculateTypeStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
-
-        for (Deck deck : decks) {
-            for (Card card : deck.getCards()) {
-                String type = card.getType() != null ?
-                        card.getType().toString() : "UNKNOWN";
-                stats.merge(type, 1, Integer::sum);
-            }
+    /**
+     * @param parallelism number of threads counting a list of decks; 1 counts on the calling thread
+     */
+    public StatisticsCalculator(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
         }
+        this.parallelism = parallelism;
+    }
 
-        return stats;
+    public Map<String, Long> calculateStatistics(List<Deck> decks, String attribute) {
+        return calculateStatistics(decks, attribute, 0);
     }
 
-    private Map<String, Integer> calculateProvisionStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
+    /**
+     * Like {@link #calculateStatistics(List, String)}, returning only the {@code top} values with
+     * the highest counts; 0 returns every value.
+     */
+    public Map<String, Long> calculateStatistics(List<Deck> decks, String attribute, int top) {
+        log.info("Calculating statistics for attribute: {}", attribute);
 
-        for (Deck deck : decks) {
-            for (Card card : deck.getCards()) {
-                String provision = card.getProvision() != null ?
-                        card.getProvision().toString() : "UNKNOWN";
-                stats.merge(provision, 1, Integer::sum);
-            }
-        }
+        StatisticsAccumulator accumulator = aggregate(decks, () -> new StatisticsAccumulator(attribute),
+                (left, right) -> {
+                    left.merge(right);
+                    return left;
+                });
+
+        Map<String, Long> sortedStatistics = accumulator.getStatistics(top);
 
-        return stats;
+        log.info("Statistics calculated: {} unique values", sortedStatistics.size());
+        return sortedStatistics;
     }
 
-    private Map<String, Integer> calculatePowerStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
+    /**
+     * Same statistics as {@link #calculateStatistics(List, String)}, computed over the columns of a snapshot.
+     */
+    public Map<String, Long> calculateStatistics(DeckSnapshot snapshot, String attribute) {
+        log.info("Calculating statistics for attribute: {} from snapshot", attribute);
 
-        for (Deck deck : decks) {
-            for (Card card : deck.getCards()) {
-                if (card.getType() == CardType.UNIT) {
-                    String power = card.getPower() != null ?
-                            card.getPower().toString() : "0";
-                    stats.merge(power, 1, Integer::sum);
-                }
-            }
-        }
+        StatisticsAccumulator accumulator = new StatisticsAccumulator(attribute);
+        accumulator.accept(snapshot);
 
-        return stats;
+        Map<String, Long> sortedStatistics = accumulator.getStatistics();
+
+        log.info("Statistics calculated: {} unique values", sortedStatistics.size());
+        return sortedStatistics;
     }
 
-    private Map<String, Integer> calculateLeaderAbilityStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
+    /**
+     * Counts several attributes in one pass over the decks, in parallel like
+     * {@link #calculateStatistics(List, String)}.
+     */
+    public MultiStatisticsAccumulator aggregate(List<Deck> decks, List<String> attributes) {
+        return aggregate(decks, () -> new MultiStatisticsAccumulator(attributes), MultiStatisticsAccumulator::merge);
+    }
 
-        for (Deck deck : decks) {
-            String ability = deck.getLeaderAbility() != null ?
-                    deck.getLeaderAbility() : "UNKNOWN";
-            stats.merge(ability, 1, Integer::sum);
+    /**
+     * Counts the decks into one accumulator, or with more than one thread splits the list into
+     * ranges that are counted into thread-confined partials and merged pairwise as the ranges join.
+     * Counts are exact sums, so the result does not depend on the split.
+     */
+    private <A extends Consumer<Deck>> A aggregate(List<Deck> decks, Supplier<A> newAccumulator,
+                                                   BinaryOperator<A> merge) {
+        if (parallelism == 1 || decks.size() < 2 * MIN_SPLIT_DECKS) {
+            A accumulator = newAccumulator.get();
+            decks.forEach(accumulator);
+            return accumulator;
         }
 
-        return stats;
+        List<Deck> indexed = decks instanceof RandomAccess ? decks : new ArrayList<>(decks);
+        int leafSize = Math.max(MIN_SPLIT_DECKS, indexed.size() / (parallelism * SPLITS_PER_WORKER) + 1);
+        ForkJoinPool pool = POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+        return pool.invoke(new AggregateTask<>(indexed, 0, indexed.size(), leafSize, newAccumulator, merge));
     }
 
-    private Map<String, Integer> calculateTotalPowerStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
-
-        for (Deck deck : decks) {
-            int totalPower = deck.getTotalUnitPower();
-            String powerRange = getPowerRange(totalPower);
-            stats.merge(powerRange, 1, Integer::sum);
+    private static final class AggregateTask<A extends Consumer<Deck>> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Deck> decks;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final Supplier<A> newAccumulator;
+        private final BinaryOperator<A> merge;
+
+        AggregateTask(List<Deck> decks, int from, int to, int leafSize,
+                      Supplier<A> newAccumulator, BinaryOperator<A> merge) {
+            this.decks = decks;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.newAccumulator = newAccumulator;
+            this.merge = merge;
         }
 
-        return stats;
+        @Override
+        protected A compute() {
+            if (to - from <= leafSize) {
+                A accumulator = newAccumulator.get();
+                for (int i = from; i < to; i++) {
+                    accumulator.accept(decks.get(i));
+                }
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask<A> left = new AggregateTask<>(decks, from, middle, leafSize, newAccumulator, merge);
+            left.fork();
+            A right = new AggregateTask<>(decks, middle, to, leafSize, newAccumulator, merge).compute();
+            return merge.apply(left.join(), right);
+        }
     }
 
-    private Map<String, Integer> calculateDeckFactionStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
+    /**
+     * Sorts by count, highest first; equal counts are ordered by value, so the order does not
+     * depend on how the counts were collected.
+     */
+    static Map<String, Long> sortByCount(Map<String, Long> statistics) {
+        return statistics.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        Map.Entry::getValue,
+                        (e1, e2) -> e1,
+                        LinkedHashMap::new
+                ));
+    }
 
+    public void printSummary(List<Deck> decks) {
+        long totalCards = 0;
+        long totalUnitPower = 0;
         for (Deck deck : decks) {
-            String faction = deck.getFaction() != null ?
-                    deck.getFaction().toString() : "UNKNOWN";
-            stats.merge(faction, 1, Integer::sum);
+            totalCards += deck.getCardCount();
+            totalUnitPower += deck.getTotalUnitPower();
         }
 
-        return stats;
+        printSummary(decks.size(), totalCards, totalUnitPower);
     }
 
-    private Map<String, Integer> calculateCategoriesStatistics(List<Deck> decks) {
-        Map<String, Integer> stats = new HashMap<>();
-
-        for (Deck deck : decks) {
-            List<String> categories = deck.getCategoriesList();
-            for (String category : categories) {
-                stats.merge(category, 1, Integer::sum);
-            }
-        }
-
-        return stats;
+    /**
+     * Prints the same summary as {@link #printSummary(List)} from the totals
+     * collected by a streaming run, without needing the decks themselves.
+     */
+    public void printSummary(StatisticsAccumulator accumulator) {
+        printSummary(accumulator.getDeckCount(), accumulator.getCardCount(), accumulator.getTotalUnitPower());
     }
 
-    private String getPowerRange(int totalPower) {
-        if (totalPower == 0) return "0";
-        if (totalPower <= 50) return "1-50";
-        if (totalPower <= 100) return "51-100";
-        if (totalPower <= 150) return "101-150";
-        if (totalPower <= 200) return "151-200";
-        return "200+";
+    /**
+     * Prints the summary once for statistics collected for several attributes.
+     */
+    public void printSummary(MultiStatisticsAccumulator accumulator) {
+        printSummary(accumulator.getDeckCount(), accumulator.getCardCount(), accumulator.getTotalUnitPower());
     }
 
-    public void printSummary(List<Deck> decks) {
+    private void printSummary(long deckCount, long totalCards, long totalUnitPower) {
         log.info("=== Deck Statistics Summary ===");
         System.out.println("\n=== Deck Statistics Summary ===");
-        System.out.println("Total decks: " + decks.size());
+        System.out.println("Total decks: " + deckCount);
 
-        int totalCards = decks.stream()
-                .mapToInt(d -> d.getCards().size())
-                .sum();
         System.out.println("Total cards: " + totalCards);
 
-        double avgCardsPerDeck = decks.isEmpty() ? 0 : (double) totalCards / decks.size();
+        double avgCardsPerDeck = deckCount == 0 ? 0 : (double) totalCards / deckCount;
         System.out.printf("Average cards per deck: %.2f\n", avgCardsPerDeck);
 
-        int totalUnitPower = decks.stream()
-                .mapToInt(Deck::getTotalUnitPower)
-                .sum();
         System.out.println("Total unit power across all decks: " + totalUnitPower);
 
-        double avgPowerPerDeck = decks.isEmpty() ? 0 : (double) totalUnitPower / decks.size();
+        double avgPowerPerDeck = deckCount == 0 ? 0 : (double) totalUnitPower / deckCount;
         System.out.printf("Average unit power per deck: %.2f\n", avgPowerPerDeck);
 
         System.out.println("================================\n");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,303 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
+import com.github.duskmage2009.model.Deck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Counts over several attributes at once, e.g. cards by faction, type and provision, so that
+ * every cross-tab and every coarser slice is answered from a single pass over the decks.
+ * Card attributes may be combined with deck attributes; each card is then counted together
+ * with the values of its deck.
+ * <p>
+ * When every dimension has dense values (factions, types, small numbers) and the combinations
+ * fit into {@link #MAX_DENSE_CELLS}, cells are counted in one array indexed by the dimensions'
+ * indexes; combinations with a value outside the dense ranges, and cubes over free-text
+ * attributes, are counted in a hash map. Not thread-safe; partial cubes are combined with
+ * {@link #merge(StatisticsCube)}.
+ */
+public class StatisticsCube implements Consumer<Deck> {
+    /**
+     * Separates the dimensions in a cube's name, e.g. {@code faction+type+provision}.
+     */
+    public static final String DIMENSION_SEPARATOR = "+";
+
+    /**
+     * Largest number of cells counted in a dense array.
+     */
+    public static final int MAX_DENSE_CELLS = 1 << 20;
+
+    private final AttributeExtractor[] dimensions;
+    private final List<String> dimensionNames = new ArrayList<>();
+    private final boolean cardLevel;
+    private final long[] denseCounts;
+    private final ObjectLongHashMap<List<String>> sparseCounts = new ObjectLongHashMap<>();
+    private final DeckFacts facts = new DeckFacts();
+
+    private long deckCount;
+    private long cardCount;
+    private long totalUnitPower;
+
+    /**
+     * @throws IllegalArgumentException if a dimension is not a registered attribute, has several values
+     *                                  per card or deck, does not count values, or is given twice
+     */
+    public StatisticsCube(List<String> dimensions) {
+        if (dimensions.isEmpty()) {
+            throw new IllegalArgumentException("A cube needs at least one dimension");
+        }
+        this.dimensions = new AttributeExtractor[dimensions.size()];
+        boolean anyCardLevel = false;
+        long denseCells = 1;
+        for (int i = 0; i < dimensions.size(); i++) {
+            AttributeExtractor extractor = AttributeRegistry.get(dimensions.get(i));
+            if (extractor.isMultiValued() || !extractor.isCountedByValue()) {
+                throw new IllegalArgumentException("Cannot group by " + extractor.getName());
+            }
+            if (dimensionNames.contains(extractor.getName())) {
+                throw new IllegalArgumentException("Dimension given twice: " + extractor.getName());
+            }
+            this.dimensions[i] = extractor;
+            dimensionNames.add(extractor.getName());
+            anyCardLevel |= extractor.getScope() == AttributeExtractor.Scope.CARD;
+            denseCells = extractor.getCardinality() == 0 ? Long.MAX_VALUE
+                    : Math.min(Long.MAX_VALUE / MAX_DENSE_CELLS, denseCells * extractor.getCardinality());
+        }
+        this.cardLevel = anyCardLevel;
+        this.denseCounts = denseCells <= MAX_DENSE_CELLS ? new long[(int) denseCells] : null;
+    }
+
+    /**
+     * Parses a cube name of dimensions joined by {@value #DIMENSION_SEPARATOR}.
+     */
+    public static List<String> parseDimensions(String name) {
+        List<String> dimensions = new ArrayList<>();
+        for (String dimension : name.split("\\" + DIMENSION_SEPARATOR)) {
+            if (!dimension.isBlank()) {
+                dimensions.add(dimension.trim());
+            }
+        }
+        return dimensions;
+    }
+
+    /**
+     * True if the attribute argument names a cube rather than a single attribute.
+     */
+    public static boolean isCube(String attribute) {
+        return attribute.contains(DIMENSION_SEPARATOR);
+    }
+
+    @Override
+    public void accept(Deck deck) {
+        int cardCount = deck.getCardCount();
+        int unitPower = deck.getTotalUnitPower();
+        countTotals(cardCount, unitPower);
+        DeckFacts deckFacts = facts.set(deck, cardCount, unitPower);
+        if (cardLevel) {
+            List<CardCopies> cardCopies = deck.getCardCopies();
+            if (cardCopies != null) {
+                for (CardCopies entry : cardCopies) {
+                    countCard(entry.getCard(), entry.getCopies(), deckFacts);
+                }
+            }
+        } else {
+            countDeck(deckFacts);
+        }
+    }
+
+    /**
+     * Counts every deck of a snapshot. Card dimensions may be crossed with deck dimensions,
+     * so the decks are rebuilt from the snapshot one at a time.
+     */
+    public void accept(DeckSnapshot snapshot) {
+        snapshot.forEachDeck(this);
+    }
+
+    /**
+     * Adds the counts of another cube over the same dimensions to this one.
+     */
+    public StatisticsCube merge(StatisticsCube other) {
+        if (!dimensionNames.equals(other.dimensionNames)) {
+            throw new IllegalArgumentException(
+                    "Cannot merge a cube by " + other.getName() + " into a cube by " + getName());
+        }
+        if (denseCounts != null) {
+            for (int i = 0; i < denseCounts.length; i++) {
+                denseCounts[i] += other.denseCounts[i];
+            }
+        }
+        other.sparseCounts.forEach(sparseCounts::addTo);
+        deckCount += other.deckCount;
+        cardCount += other.cardCount;
+        totalUnitPower += other.totalUnitPower;
+        return this;
+    }
+
+    /**
+     * Returns the count of every combination of values, keyed by the values in dimension order,
+     * sorted by count, highest first, and then by values.
+     */
+    public Map<List<String>, Long> getCells() {
+        Map<List<String>, Long> cells = new HashMap<>();
+        if (denseCounts != null) {
+            for (int index = 0; index < denseCounts.length; index++) {
+                if (denseCounts[index] != 0) {
+                    cells.put(labels(index), denseCounts[index]);
+                }
+            }
+        }
+        sparseCounts.forEach((values, count) -> {
+            if (count != 0) {
+                cells.put(values, count);
+            }
+        });
+        return sortByCount(cells);
+    }
+
+    /**
+     * Returns the counts over some of the dimensions only, summing over the others,
+     * e.g. faction by type out of a cube by faction, type and provision.
+     *
+     * @throws IllegalArgumentException if an attribute is not a dimension of this cube
+     */
+    public Map<List<String>, Long> rollUp(List<String> dimensions) {
+        int[] positions = new int[dimensions.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = dimensionNames.indexOf(AttributeRegistry.get(dimensions.get(i)).getName());
+            if (positions[i] < 0) {
+                throw new IllegalArgumentException(dimensions.get(i) + " is not a dimension of " + getName());
+            }
+        }
+        Map<List<String>, Long> rolledUp = new HashMap<>();
+        getCells().forEach((values, count) -> {
+            String[] kept = new String[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                kept[i] = values.get(positions[i]);
+            }
+            rolledUp.merge(List.of(kept), count, Long::sum);
+        });
+        return sortByCount(rolledUp);
+    }
+
+    /**
+     * Canonical names of the dimensions, in order.
+     */
+    public List<String> getDimensions() {
+        return List.copyOf(dimensionNames);
+    }
+
+    /**
+     * The dimensions joined by {@value #DIMENSION_SEPARATOR}.
+     */
+    public String getName() {
+        return String.join(DIMENSION_SEPARATOR, dimensionNames);
+    }
+
+    public long getDeckCount() {
+        return deckCount;
+    }
+
+    public long getCardCount() {
+        return cardCount;
+    }
+
+    public long getTotalUnitPower() {
+        return totalUnitPower;
+    }
+
+    void countTotals(int deckCardCount, int deckUnitPower) {
+        deckCount++;
+        cardCount += deckCardCount;
+        totalUnitPower += deckUnitPower;
+    }
+
+    boolean isCardLevel() {
+        return cardLevel;
+    }
+
+    void countCard(Card card, long copies, DeckFacts deck) {
+        count(card, copies, deck);
+    }
+
+    void countDeck(DeckFacts deck) {
+        count(null, 1, deck);
+    }
+
+    private void count(Card card, long copies, DeckFacts deck) {
+        if (denseCounts != null) {
+            int index = 0;
+            int dimension = 0;
+            for (; dimension < dimensions.length; dimension++) {
+                int value = dimensions[dimension].index(card, deck);
+                if (value < 0) {
+                    break;
+                }
+                index = index * dimensions[dimension].getCardinality() + value;
+            }
+            if (dimension == dimensions.length) {
+                denseCounts[index] += copies;
+                return;
+            }
+        }
+
+        String[] values = new String[dimensions.length];
+        for (int dimension = 0; dimension < dimensions.length; dimension++) {
+            values[dimension] = value(dimensions[dimension], card, deck);
+            if (values[dimension] == null) {
+                // Not counted for this dimension, like the power of a card that is not a unit
+                return;
+            }
+        }
+        sparseCounts.addTo(Arrays.asList(values), copies);
+    }
+
+    private static String value(AttributeExtractor dimension, Card card, DeckFacts deck) {
+        if (dimension.getCardinality() > 0) {
+            int index = dimension.index(card, deck);
+            if (index >= 0) {
+                return dimension.label(index);
+            }
+        }
+        String[] value = new String[1];
+        dimension.values(card, deck, extracted -> value[0] = extracted);
+        return value[0];
+    }
+
+    private List<String> labels(int index) {
+        String[] labels = new String[dimensions.length];
+        for (int dimension = dimensions.length - 1; dimension >= 0; dimension--) {
+            int cardinality = dimensions[dimension].getCardinality();
+            labels[dimension] = dimensions[dimension].label(index % cardinality);
+            index /= cardinality;
+        }
+        return List.of(labels);
+    }
+
+    private static Map<List<String>, Long> sortByCount(Map<List<String>, Long> cells) {
+        List<Map.Entry<List<String>, Long>> entries = new ArrayList<>(cells.entrySet());
+        entries.sort(Map.Entry.<List<String>, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry::getKey, StatisticsCube::compareValues));
+        Map<List<String>, Long> sorted = new LinkedHashMap<>();
+        entries.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private static int compareValues(List<String> first, List<String> second) {
+        for (int i = 0; i < first.size(); i++) {
+            int comparison = first.get(i).compareTo(second.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+}
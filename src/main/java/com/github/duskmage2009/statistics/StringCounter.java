@@ -0,0 +1,29 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Counts the values of a free-text attribute in a primitive open-addressing map.
+ */
+final class StringCounter implements AttributeCounter {
+    private final ObjectLongHashMap<String> counts = new ObjectLongHashMap<>();
+
+    @Override
+    public void add(String value, long count) {
+        counts.addTo(value, count);
+    }
+
+    @Override
+    public void addAll(AttributeCounter other, long sign) {
+        ((StringCounter) other).counts.forEach((value, count) -> counts.addTo(value, sign * count));
+    }
+
+    @Override
+    public void forEach(ObjLongConsumer<String> consumer) {
+        counts.forEach((value, count) -> {
+            if (count != 0) {
+                consumer.accept(value, count);
+            }
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.duskmage2009.statistics;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Selects the {@code limit} values with the highest counts in one pass, keeping the best seen so
+ * far in a heap of that size with the worst of them on top, so selecting from n values takes
+ * O(n log limit) instead of sorting all n. Equal counts are ordered by value, like
+ * {@link StatisticsCalculator#sortByCount(Map)}, so the selection does not depend on the order
+ * the values are offered in.
+ */
+final class TopValues<K> {
+    private final int limit;
+    private final Comparator<? super K> valueOrder;
+    // Highest count first, then lowest value
+    private final Comparator<Map.Entry<K, Long>> order;
+    private final PriorityQueue<Map.Entry<K, Long>> heap;
+
+    /**
+     * @param valueOrder order of values with equal counts
+     */
+    TopValues(int limit, Comparator<? super K> valueOrder) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1: " + limit);
+        }
+        this.limit = limit;
+        this.valueOrder = valueOrder;
+        this.order = Map.Entry.<K, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry::getKey, valueOrder);
+        this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, order.reversed());
+    }
+
+    void offer(K value, long count) {
+        if (heap.size() == limit) {
+            Map.Entry<K, Long> worst = heap.peek();
+            // Rejected without allocating, since most values are when the limit is small
+            if (count < worst.getValue()
+                    || count == worst.getValue() && valueOrder.compare(value, worst.getKey()) >= 0) {
+                return;
+            }
+            heap.poll();
+        }
+        heap.add(new AbstractMap.SimpleImmutableEntry<>(value, count));
+    }
+
+    /**
+     * Returns the selected values sorted by count, highest first.
+     */
+    Map<K, Long> toMap() {
+        List<Map.Entry<K, Long>> entries = new ArrayList<>(heap);
+        entries.sort(order);
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        entries.forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.duskmage2009.cache;
+
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.parser.DeckParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckSnapshotTest {
+
+    @Test
+    void testSegmentedMappingReadsSameColumns(@TempDir Path tempDir) throws IOException {
+        DeckParser parser = new DeckParser();
+        DeckSnapshotBuilder builder = new DeckSnapshotBuilder();
+        for (String name : List.of("nilfgaard_control.json", "monster_swarm.json", "Skellige_Starter_Deck.json")) {
+            parser.parse(Path.of("decks", name), builder);
+        }
+        Path file = tempDir.resolve(SnapshotCache.FILE_NAME);
+        builder.writeTo(file, 42);
+
+        DeckSnapshot whole = DeckSnapshot.open(file);
+        // Segments of 4 values in windows of 32 bytes, so every column and most strings cross a window
+        DeckSnapshot segmented = DeckSnapshot.open(file, 2);
+
+        assertEquals(42, segmented.getFingerprint());
+        assertEquals(whole.getDeckCount(), segmented.getDeckCount());
+        assertEquals(whole.getCardTableSize(), segmented.getCardTableSize());
+        assertArrayEquals(whole.getCardWeights(), segmented.getCardWeights());
+        for (int deck = 0; deck < whole.getDeckCount(); deck++) {
+            assertEquals(whole.getTotalUnitPower(deck), segmented.getTotalUnitPower(deck));
+            assertEquals(whole.getTotalProvisionUsed(deck), segmented.getTotalProvisionUsed(deck));
+            assertEquals(whole.getDeck(deck).getCards(), segmented.getDeck(deck).getCards());
+        }
+        List<Deck> decks = new ArrayList<>();
+        segmented.forEachDeck(decks::add);
+        assertEquals(parser.parse(Path.of("decks", "monster_swarm.json")).get(0), decks.get(1));
+    }
+
+    @Test
+    void testTruncatedSnapshotIsRejected(@TempDir Path tempDir) throws IOException {
+        DeckSnapshotBuilder builder = new DeckSnapshotBuilder();
+        new DeckParser().parse(Path.of("decks", "nilfgaard_control.json"), builder);
+        Path file = tempDir.resolve(SnapshotCache.FILE_NAME);
+        builder.writeTo(file, 1);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(IOException.class, () -> DeckSnapshot.open(file));
+        assertThrows(IOException.class, () -> DeckSnapshot.open(file, 2));
+    }
+}
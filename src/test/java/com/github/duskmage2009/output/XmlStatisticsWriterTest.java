@@ -0,0 +1,121 @@
+package com.github.duskmage2009.output;
+
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XmlStatisticsWriterTest {
+
+    private final XmlStatisticsWriter writer = new XmlStatisticsWriter();
+
+    @Test
+    void testWriteCubeNestsGroupsByDimension(@TempDir Path tempDir) throws Exception {
+        Map<List<String>, Long> cells = Map.of(
+                List.of("Monsters", "Unit", "4"), 5L,
+                List.of("Monsters", "Unit", "6"), 2L,
+                List.of("Monsters", "Special", "6"), 1L,
+                List.of("Skellige", "Unit", "4"), 3L);
+
+        writer.writeCube(List.of("deckFaction", "type", "provision"), cells, tempDir.toString());
+
+        Element root = parse(tempDir.resolve("statistics_by_deckfaction_type_provision.xml"));
+        assertEquals("statistics", root.getTagName());
+        assertEquals("deckFaction,type,provision", root.getAttribute("dimensions"));
+
+        // Groups are ordered by their total count, highest first
+        List<Element> factions = children(root, "group");
+        assertEquals(2, factions.size());
+        Element monsters = factions.get(0);
+        assertEquals("deckFaction", monsters.getAttribute("dimension"));
+        assertEquals("Monsters", monsters.getAttribute("value"));
+        assertEquals("8", text(monsters, "count"));
+        assertEquals("Skellige", factions.get(1).getAttribute("value"));
+        assertEquals("3", text(factions.get(1), "count"));
+
+        List<Element> types = children(monsters, "group");
+        assertEquals(2, types.size());
+        assertEquals("type", types.get(0).getAttribute("dimension"));
+        assertEquals("Unit", types.get(0).getAttribute("value"));
+        assertEquals("7", text(types.get(0), "count"));
+        assertTrue(children(types.get(0), "group").isEmpty());
+
+        // The last dimension is written as items
+        List<Element> provisions = children(types.get(0), "item");
+        assertEquals(2, provisions.size());
+        assertEquals("4", text(provisions.get(0), "value"));
+        assertEquals("5", text(provisions.get(0), "count"));
+        assertEquals("6", text(provisions.get(1), "value"));
+        assertEquals("2", text(provisions.get(1), "count"));
+        assertEquals("1", text(children(types.get(1), "item").get(0), "count"));
+    }
+
+    @Test
+    void testWriteApproximateStatisticsWithErrorBounds(@TempDir Path tempDir) throws Exception {
+        // A sketch of 10 values per reported value, overflowed by rare abilities
+        StatisticsAccumulator statistics = new StatisticsAccumulator("leaderAbility", 2);
+        for (int i = 0; i < 100; i++) {
+            statistics.accept(deck(i % 2 == 0 ? "Frequent" : i % 3 == 0 ? "Second" : "Rare " + i));
+        }
+        assertTrue(statistics.isApproximate());
+        Map<String, Long> values = statistics.getStatistics();
+        Map<String, Long> errorBounds = statistics.getErrorBounds();
+        long errorBound = statistics.getErrorBound();
+        assertTrue(errorBound > 0);
+
+        writer.writeStatistics(values, errorBounds, errorBound, "leaderAbility", tempDir.toString());
+
+        Element root = parse(tempDir.resolve("statistics_by_leaderability.xml"));
+        assertEquals("true", root.getAttribute("approximate"));
+        assertEquals(Long.toString(errorBound), root.getAttribute("unlistedMaxCount"));
+        List<Element> items = children(root, "item");
+        assertEquals(List.of("Frequent", "Second"), items.stream().map(item -> text(item, "value")).toList());
+        for (Element item : items) {
+            String value = text(item, "value");
+            assertEquals(values.get(value).toString(), text(item, "count"), value);
+            assertEquals(errorBounds.get(value).toString(), text(item, "error"), value);
+        }
+
+        // Exact statistics carry neither
+        writer.writeStatistics(Map.of("Frequent", 50L), "leaderAbility", tempDir.toString());
+        root = parse(tempDir.resolve("statistics_by_leaderability.xml"));
+        assertFalse(root.hasAttribute("approximate"));
+        assertFalse(root.hasAttribute("unlistedMaxCount"));
+        assertTrue(children(children(root, "item").get(0), "error").isEmpty());
+    }
+
+    private static Deck deck(String leaderAbility) {
+        return new Deck("Deck", Faction.MONSTERS, leaderAbility, 150, null, List.of());
+    }
+
+    private static Element parse(Path file) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file.toFile()).getDocumentElement();
+    }
+
+    private static List<Element> children(Element parent, String tagName) {
+        List<Element> children = new ArrayList<>();
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element element && element.getTagName().equals(tagName)) {
+                children.add(element);
+            }
+        }
+        return children;
+    }
+
+    private static String text(Element parent, String tagName) {
+        List<Element> matches = children(parent, tagName);
+        assertEquals(1, matches.size(), tagName);
+        return matches.get(0).getTextContent();
+    }
+}
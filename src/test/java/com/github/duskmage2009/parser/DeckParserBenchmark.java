@@ -0,0 +1,87 @@
+package com.github.duskmage2009.parser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Manual benchmark comparing buffered stream input with memory-mapped input on a large
+ * array file. Not run by the test suite; start it with the test classpath:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *      com.github.duskmage2009.parser.DeckParserBenchmark [deck_count] [rounds]
+ * </pre>
+ */
+public class DeckParserBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int deckCount = args.length > 0 ? Integer.parseInt(args[0]) : 30_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path file = Files.createTempFile("gwent-benchmark", ".json");
+        try {
+            writeArrayFile(file, deckCount);
+            System.out.printf("File: %d decks, %.1f MB%n", deckCount, Files.size(file) / (1024.0 * 1024));
+
+            for (DecodingMode mode : DecodingMode.values()) {
+                run("stream " + mode, new DeckParser(mode, Long.MAX_VALUE), file, rounds);
+                run("mmap   " + mode, new DeckParser(mode, 0), file, rounds);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void run(String label, DeckParser parser, Path file, int rounds) throws IOException {
+        parser.parse(file, deck -> { });
+
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            parser.parse(file, deck -> { });
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+
+        double megabytes = Files.size(file) / (1024.0 * 1024);
+        System.out.printf("%-16s best %6d ms, avg %6d ms, %6.1f MB/s%n", label,
+                best / 1_000_000, total / rounds / 1_000_000, megabytes / (best / 1e9));
+    }
+
+    public static void writeArrayFile(Path file, int deckCount) throws IOException {
+        String[] factions = {"Northern Realms", "Nilfgaard", "Scoia'tael", "Skellige", "Monsters", "Syndicate"};
+        String[] types = {"Unit", "Unit", "Unit", "Special", "Artifact"};
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("[\n");
+            for (int d = 0; d < deckCount; d++) {
+                String faction = factions[d % factions.length];
+                if (d > 0) {
+                    writer.write(",\n");
+                }
+                writer.write("  {\n    \"name\": \"Benchmark Deck " + d + "\",\n"
+                        + "    \"faction\": \"" + faction + "\",\n"
+                        + "    \"leaderAbility\": \"Ability " + (d % 37) + "\",\n"
+                        + "    \"provisionLimit\": 150,\n"
+                        + "    \"categories\": \"Control, Tempo\",\n"
+                        + "    \"cards\": [\n");
+                for (int c = 0; c < 40; c++) {
+                    String type = types[(d + c) % types.length];
+                    if (c > 0) {
+                        writer.write(",\n");
+                    }
+                    writer.write("      {\"name\": \"Card " + (c * 7 + d % 11) + "\", "
+                            + "\"provision\": " + (4 + c % 10) + ", "
+                            + "\"power\": " + ("Unit".equals(type) ? 1 + c % 9 : 0) + ", "
+                            + "\"type\": \"" + type + "\", "
+                            + "\"faction\": \"" + (c % 4 == 0 ? "Neutral" : faction) + "\"}");
+                }
+                writer.write("\n    ]\n  }");
+            }
+            writer.write("\n]\n");
+        }
+    }
+}
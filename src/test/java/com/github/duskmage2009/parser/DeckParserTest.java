@@ -9,9 +9,14 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -395,4 +400,443 @@ class DeckParserTest {
         assertEquals("Deck 1", decks.get(0).getName());
         assertEquals("Deck 100", decks.get(99).getName());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParseWithConsumerDoesNotCollectDecks(@TempDir Path tempDir) throws IOException {
+        String json = """
+                [
+                  {"name": "Deck 1", "faction": "Monsters", "leaderAbility": "A", "provisionLimit": 150, "cards": []},
+                  {"name": "Deck 2", "faction": "Skellige", "leaderAbility": "B", "provisionLimit": 150, "cards": []}
+                ]
+                """;
+
+        Path testFile = tempDir.resolve("consumer_decks.json");
+        Files.writeString(testFile, json);
+
+        List<String> names = new ArrayList<>();
+        int count = parser.parse(testFile, deck -> names.add(deck.getName()));
+
+        assertEquals(2, count);
+        assertEquals(List.of("Deck 1", "Deck 2"), names);
+    }
+
+    @Test
+    void testTokenDecoderMatchesDatabindOnSampleDecks() throws IOException {
+        DeckParser databind = new DeckParser(DecodingMode.DATABIND);
+        DeckParser token = new DeckParser(DecodingMode.TOKEN);
+
+        try (var files = Files.list(Path.of("decks"))) {
+            List<Path> jsonFiles = files.filter(f -> f.toString().endsWith(".json")).sorted().toList();
+            assertFalse(jsonFiles.isEmpty());
+
+            for (Path file : jsonFiles) {
+                assertSameDecks(databind.parse(file), token.parse(file));
+            }
+        }
+    }
+
+    @Test
+    void testTokenDecoderMatchesDatabindCoercions(@TempDir Path tempDir) throws IOException {
+        String json = """
+                [
+                  {
+                    "name": "Coerced",
+                    "faction": "NORTHERN_REALMS",
+                    "leaderAbility": null,
+                    "provisionLimit": "155",
+                    "categories": 42,
+                    "cards": [
+                      {"name": "Upper", "provision": "7", "power": null, "type": "SPECIAL", "faction": "scoia'tael"},
+                      {"name": "Lower", "provision": 4, "power": 3, "type": "unit", "faction": "neutral"},
+                      {"provision": 5, "type": null, "faction": null}
+                    ]
+                  }
+                ]
+                """;
+
+        Path testFile = tempDir.resolve("coercions.json");
+        Files.writeString(testFile, json);
+
+        List<Deck> databind = new DeckParser(DecodingMode.DATABIND).parse(testFile);
+        List<Deck> token = new DeckParser(DecodingMode.TOKEN).parse(testFile);
+
+        assertSameDecks(databind, token);
+        assertEquals(Faction.SCOIATAEL, token.get(0).getCards().get(0).getFaction());
+        assertEquals(CardType.SPECIAL, token.get(0).getCards().get(0).getType());
+        assertEquals(155, token.get(0).getProvisionLimit());
+    }
+
+    @Test
+    void testTokenDecoderMatchesDatabindOnFloatNumbers(@TempDir Path tempDir) throws IOException {
+        Path testFile = tempDir.resolve("floats.json");
+        Files.writeString(testFile, """
+                [
+                  {
+                    "name": "Floats",
+                    "faction": "Monsters",
+                    "provisionLimit": 150.0,
+                    "cards": [
+                      {"name": "Whole", "provision": 5.0, "power": 1e1, "type": "Unit", "faction": "Monsters"},
+                      {"name": "Fraction", "provision": 4.7, "power": -2.5, "type": "Unit", "faction": "Monsters"}
+                    ]
+                  }
+                ]
+                """);
+
+        List<Deck> databind = new DeckParser(DecodingMode.DATABIND).parse(testFile);
+        List<Deck> token = new DeckParser(DecodingMode.TOKEN).parse(testFile);
+
+        assertSameDecks(databind, token);
+        assertEquals(5, token.get(0).getCards().get(0).getProvision());
+        assertEquals(10, token.get(0).getCards().get(0).getPower());
+        assertEquals(-2, token.get(0).getCards().get(1).getPower());
+        assertEquals(150, token.get(0).getProvisionLimit());
+
+        Path outOfRange = tempDir.resolve("out_of_range.json");
+        Files.writeString(outOfRange, """
+                {"name": "Deck", "faction": "Monsters", "provisionLimit": 3e10, "cards": []}
+                """);
+        for (DecodingMode mode : DecodingMode.values()) {
+            assertThrows(IOException.class, () -> new DeckParser(mode).parse(outOfRange), mode.toString());
+        }
+    }
+
+    @Test
+    void testTokenDecoderRejectsUnknownValues(@TempDir Path tempDir) throws IOException {
+        Path unknownField = tempDir.resolve("unknown_field.json");
+        Files.writeString(unknownField, """
+                {"name": "Deck", "faction": "Monsters", "color": "red", "cards": []}
+                """);
+        Path unknownFaction = tempDir.resolve("unknown_faction.json");
+        Files.writeString(unknownFaction, """
+                {"name": "Deck", "faction": "Wild Hunt", "cards": []}
+                """);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            DeckParser modeParser = new DeckParser(mode);
+            assertThrows(IOException.class, () -> modeParser.parse(unknownField), mode.name());
+            assertThrows(IOException.class, () -> modeParser.parse(unknownFaction), mode.name());
+        }
+    }
+
+    private static void assertSameDecks(List<Deck> expected, List<Deck> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Deck e = expected.get(i);
+            Deck a = actual.get(i);
+            assertEquals(e, a);
+            assertEquals(e.getProvisionLimit(), a.getProvisionLimit());
+            assertEquals(e.getCategories(), a.getCategories());
+            assertEquals(e.getCards(), a.getCards());
+        }
+    }
+
+    @Test
+    void testMemoryMappedInputMatchesStreamInput() throws IOException {
+        DeckParser streamed = new DeckParser(DecodingMode.TOKEN, Long.MAX_VALUE);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            DeckParser mapped = new DeckParser(mode, 0);
+            Path file = Path.of("decks", "big_deck_for_test_only.json");
+
+            assertSameDecks(streamed.parse(file), mapped.parse(file));
+            assertEquals(streamed.parseSingle(file).getCards(), mapped.parseSingle(file).getCards());
+        }
+    }
+
+    @Test
+    void testMappedStreamCrossesSegments(@TempDir Path tempDir) throws IOException {
+        byte[] content = new byte[1000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Path file = tempDir.resolve("bytes.bin");
+        Files.write(file, content);
+
+        try (MappedFileInputStream in = new MappedFileInputStream(file, 10, 990, 64)) {
+            byte[] read = in.readAllBytes();
+            assertArrayEquals(Arrays.copyOfRange(content, 10, 990), read);
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    void testParseDecksNestedInWrapperObject(@TempDir Path tempDir) throws IOException {
+        String json = """
+                {
+                  "exportVersion": 2,
+                  "source": {"tool": "deck-exporter", "tags": ["nightly"]},
+                  "decks": [
+                    {"name": "Deck 1", "faction": "Monsters", "leaderAbility": "A", "provisionLimit": 150,
+                     "cards": [{"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]},
+                    {"name": "Deck 2", "faction": "Skellige", "leaderAbility": "B", "provisionLimit": 150, "cards": []}
+                  ]
+                }
+                """;
+
+        Path testFile = tempDir.resolve("wrapped_decks.json");
+        Files.writeString(testFile, json);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            List<Deck> decks = new DeckParser(mode).parse(testFile);
+
+            assertEquals(2, decks.size(), mode.name());
+            assertEquals("Deck 1", decks.get(0).getName());
+            assertEquals("Ghoul", decks.get(0).getCards().get(0).getName());
+            assertEquals(Faction.SKELLIGE, decks.get(1).getFaction());
+        }
+    }
+
+    @Test
+    void testParseSingleDeckWithFieldsInAnyOrder(@TempDir Path tempDir) throws IOException {
+        String json = """
+                {"cards": [], "provisionLimit": 150, "faction": "Nilfgaard", "name": "Reordered"}
+                """;
+
+        Path testFile = tempDir.resolve("reordered.json");
+        Files.writeString(testFile, json);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            List<Deck> decks = new DeckParser(mode).parse(testFile);
+
+            assertEquals(1, decks.size(), mode.name());
+            assertEquals("Reordered", decks.get(0).getName());
+            assertEquals(Faction.NILFGAARD, decks.get(0).getFaction());
+        }
+    }
+
+    @Test
+    void testParseWrapperWithoutDeckArray(@TempDir Path tempDir) throws IOException {
+        Path testFile = tempDir.resolve("no_decks.json");
+        Files.writeString(testFile, "{\"exportVersion\": 2}");
+
+        assertThrows(IOException.class, () -> parser.parse(testFile));
+    }
+
+    @Test
+    void testParseWrapperStartingWithDeckFieldName(@TempDir Path tempDir) throws IOException {
+        String json = """
+                {"name": "export", "decks": [
+                  {"name": "Deck 1", "faction": "Monsters", "leaderAbility": "A", "provisionLimit": 150,
+                   "cards": [{"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]}
+                ]}
+                """;
+
+        Path testFile = tempDir.resolve("named_export.json");
+        Files.writeString(testFile, json);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            List<Deck> decks = new DeckParser(mode).parse(testFile);
+
+            assertEquals(1, decks.size(), mode.name());
+            assertEquals("Deck 1", decks.get(0).getName());
+            assertEquals(1, decks.get(0).getCardCount());
+        }
+    }
+
+    @Test
+    void testParseWrapperSkipsArraysThatAreNotDecks(@TempDir Path tempDir) throws IOException {
+        String json = """
+                {"decks": [{"name": "Deck 1", "faction": "Skellige", "cards": []}],
+                 "tags": ["a", ["b"], {"c": 1}],
+                 "history": [],
+                 "others": [{"name": "Deck 2", "faction": "Monsters", "cards": []}]}
+                """;
+
+        Path testFile = tempDir.resolve("tagged_export.json");
+        Files.writeString(testFile, json);
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            List<Deck> decks = new DeckParser(mode).parse(testFile);
+
+            assertEquals(2, decks.size(), mode.name());
+            assertEquals("Deck 1", decks.get(0).getName());
+            assertEquals("Deck 2", decks.get(1).getName());
+        }
+    }
+
+    @Test
+    void testCopiesOfACardAreAddedUpWhereverTheyAppear(@TempDir Path tempDir) throws IOException {
+        String ghoul = "{\"name\": \"Ghoul\", \"provision\": 4, \"power\": 3, \"type\": \"Unit\", \"faction\": \"Monsters\"}";
+        String nekker = "{\"name\": \"Nekker\", \"provision\": 4, \"power\": 2, \"type\": \"Unit\", \"faction\": \"Monsters\"}";
+        Path testFile = tempDir.resolve("scattered.json");
+        Files.writeString(testFile, "{\"name\": \"Scattered\", \"faction\": \"Monsters\", \"cards\": ["
+                + String.join(", ", ghoul, nekker, ghoul, ghoul) + "]}");
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            Deck deck = new DeckParser(mode).parse(testFile).get(0);
+
+            assertEquals(2, deck.getCardCopies().size(), mode.name());
+            assertEquals(3, deck.getCardCopies().get(0).getCopies());
+            assertEquals("Nekker", deck.getCardCopies().get(1).getCard().getName());
+            assertEquals(4, deck.getCardCount());
+            assertEquals(11, deck.getTotalUnitPower());
+        }
+    }
+
+    @Test
+    void testIdenticalCardsShareOneInstance() throws IOException {
+        Path file = Path.of("decks", "nilfgaard_control.json");
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            DeckParser modeParser = new DeckParser(mode);
+            Deck first = modeParser.parse(file).get(0);
+            Deck second = modeParser.parse(file).get(0);
+
+            assertEquals(first.getCards(), second.getCards());
+            for (int i = 0; i < first.getCardCopies().size(); i++) {
+                assertSame(first.getCardCopies().get(i).getCard(), second.getCardCopies().get(i).getCard());
+            }
+            assertTrue(first.getCardCopies().size() < first.getCardCount(), mode.name());
+            assertEquals(first.getCardCopies().size(), modeParser.getCardDictionary().size());
+        }
+    }
+
+    @Test
+    void testParseJsonLines(@TempDir Path tempDir) throws IOException {
+        Path testFile = tempDir.resolve("decks.jsonl");
+        Files.writeString(testFile, jsonLines(5));
+
+        for (DecodingMode mode : DecodingMode.values()) {
+            List<Deck> decks = new DeckParser(mode).parse(testFile);
+
+            assertEquals(5, decks.size(), mode.name());
+            assertEquals("Line Deck 1", decks.get(0).getName());
+            assertEquals("Line Deck 5", decks.get(4).getName());
+            assertEquals(2, decks.get(4).getCardCount());
+        }
+    }
+
+    @Test
+    void testJsonLinesSlicesCoverEveryLineOnce(@TempDir Path tempDir) throws IOException {
+        Path testFile = tempDir.resolve("decks.ndjson");
+        Files.writeString(testFile, jsonLines(50));
+
+        List<FileSlice> slices = new JsonLinesSplitter().split(testFile, 700);
+        assertTrue(slices.size() > 1);
+        assertEquals(0, slices.get(0).getStart());
+        assertEquals(Files.size(testFile), slices.get(slices.size() - 1).getEnd());
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < slices.size(); i++) {
+            if (i > 0) {
+                assertEquals(slices.get(i - 1).getEnd(), slices.get(i).getStart());
+            }
+            parser.parse(slices.get(i), deck -> names.add(deck.getName()));
+        }
+
+        assertEquals(50, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals("Line Deck " + (i + 1), names.get(i));
+        }
+    }
+
+    static String jsonLines(int count) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            lines.append("{\"name\": \"Line Deck ").append(i).append("\", \"faction\": \"Monsters\", ")
+                    .append("\"leaderAbility\": \"Ability\", \"provisionLimit\": 150, \"categories\": \"Swarm\", ")
+                    .append("\"cards\": [{\"name\": \"Ghoul\", \"provision\": 4, \"power\": 3, ")
+                    .append("\"type\": \"Unit\", \"faction\": \"Monsters\"}, {\"name\": \"Ghoul\", ")
+                    .append("\"provision\": 4, \"power\": 3, \"type\": \"Unit\", \"faction\": \"Monsters\"}]}\n");
+        }
+        return lines.toString();
+    }
+
+    @Test
+    void testArraySlicesRespectStringsAndNesting(@TempDir Path tempDir) throws IOException {
+        StringBuilder json = new StringBuilder("\uFEFF  [\n");
+        for (int i = 1; i <= 40; i++) {
+            if (i > 1) json.append(",\n");
+            json.append("{\"name\": \"Deck ").append(i).append(", \\\"[tricky]\\\" {name}\", ")
+                    .append("\"faction\": \"Monsters\", \"leaderAbility\": \"A, B\", \"provisionLimit\": 150, ")
+                    .append("\"cards\": [{\"name\": \"Ghoul\", \"provision\": 4, \"power\": 3, ")
+                    .append("\"type\": \"Unit\", \"faction\": \"Monsters\"}]}");
+        }
+        json.append("\n]\n");
+        Path testFile = tempDir.resolve("array.json");
+        Files.writeString(testFile, json.toString());
+
+        List<FileSlice> slices = new ArrayList<>();
+        assertTrue(new JsonArraySplitter().split(testFile, 500, slices::add));
+        assertTrue(slices.size() > 1);
+
+        List<Deck> sliced = new ArrayList<>();
+        for (FileSlice slice : slices) {
+            parser.parse(slice, sliced::add);
+        }
+
+        assertSameDecks(parser.parse(testFile), sliced);
+        assertEquals("Deck 40, \"[tricky]\" {name}", sliced.get(39).getName());
+    }
+
+    @Test
+    void testArraySplitterSkipsNonArrayFiles() throws IOException {
+        List<FileSlice> slices = new ArrayList<>();
+
+        assertFalse(new JsonArraySplitter().split(Path.of("decks", "nilfgaard_control.json"), 10, slices::add));
+        assertTrue(slices.isEmpty());
+    }
+
+    @Test
+    void testParseGzipCompressedFiles(@TempDir Path tempDir) throws IOException {
+        Path plain = Path.of("decks", "big_deck_for_test_only.json");
+        Path compressed = tempDir.resolve("big_deck.json.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            Files.copy(plain, out);
+        }
+        Path compressedLines = tempDir.resolve("decks.jsonl.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedLines))) {
+            out.write(jsonLines(3).getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertTrue(DeckParser.isJsonLines(compressedLines));
+        for (long threshold : new long[]{0, Long.MAX_VALUE}) {
+            DeckParser gzipParser = new DeckParser(DecodingMode.TOKEN, threshold);
+
+            assertSameDecks(parser.parse(plain), gzipParser.parse(compressed));
+            assertEquals(3, gzipParser.parse(compressedLines).size());
+        }
+    }
+
+    @Test
+    void testParsePrefetchedBytesMatchesFileInput(@TempDir Path tempDir) throws IOException {
+        Path array = Path.of("decks", "big_deck_for_test_only.json");
+        Path compressed = tempDir.resolve("decks.jsonl.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write(jsonLines(5).getBytes(StandardCharsets.UTF_8));
+        }
+        List<FileSlice> slices = new ArrayList<>(List.of(FileSlice.wholeFile(array), FileSlice.wholeFile(compressed)));
+        new JsonArraySplitter().split(array, 4096, slices::add);
+
+        for (FileSlice slice : slices) {
+            List<Deck> streamed = new ArrayList<>();
+            List<Deck> prefetched = new ArrayList<>();
+            parser.parse(slice, streamed::add);
+            parser.parse(slice, parser.readBytes(slice), prefetched::add);
+
+            assertFalse(streamed.isEmpty(), slice.toString());
+            assertSameDecks(streamed, prefetched);
+        }
+    }
+
+    @Test
+    void testParseFromReusedBuffer(@TempDir Path tempDir) throws IOException {
+        Path first = tempDir.resolve("first.jsonl");
+        Path second = tempDir.resolve("second.jsonl");
+        Files.writeString(first, jsonLines(5));
+        Files.writeString(second, jsonLines(2));
+        byte[] buffer = new byte[(int) Files.size(first)];
+
+        for (Path file : List.of(first, second, first)) {
+            FileSlice slice = FileSlice.wholeFile(file);
+            List<Deck> streamed = new ArrayList<>();
+            List<Deck> buffered = new ArrayList<>();
+            parser.parse(slice, streamed::add);
+            parser.parse(slice, buffer, parser.readBytes(slice, buffer), buffered::add);
+
+            assertSameDecks(streamed, buffered);
+        }
+        assertEquals(-1, parser.readBytes(FileSlice.wholeFile(first), new byte[10]));
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.duskmage2009.processor;
+
+import com.github.duskmage2009.parser.DeckParser;
+import com.github.duskmage2009.parser.DeckParserBenchmark;
+import com.github.duskmage2009.parser.DecodingMode;
+import com.github.duskmage2009.parser.FileSlice;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Manual benchmark comparing the executor modes of {@link FileProcessor}, on local files and
+ * on a slow-storage stand-in that adds latency to opening files and to every read.
+ * Not run by the test suite; virtual threads need a Java 21 runtime:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *      com.github.duskmage2009.processor.FileProcessorBenchmark [file_count] [open_latency_ms] [read_latency_ms]
+ * </pre>
+ */
+public class FileProcessorBenchmark {
+    private static final int DECKS_PER_FILE = 100;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long openLatency = args.length > 1 ? Long.parseLong(args[1]) : 20;
+        long readLatency = args.length > 2 ? Long.parseLong(args[2]) : 2;
+
+        Path directory = Files.createTempDirectory("gwent-benchmark");
+        try {
+            for (int i = 0; i < fileCount; i++) {
+                DeckParserBenchmark.writeArrayFile(directory.resolve("decks" + i + ".json"), DECKS_PER_FILE);
+            }
+            System.out.printf("%d files of %d decks, %d processors, Java %s%n", fileCount, DECKS_PER_FILE,
+                    Runtime.getRuntime().availableProcessors(), Runtime.version());
+
+            DeckParser localParser = new DeckParser(DecodingMode.TOKEN);
+            DeckParser slowParser = new SlowStorageParser(openLatency, readLatency);
+            run("local, 4 platform threads", localParser, ExecutorMode.PLATFORM, directory);
+            run("local, virtual threads", localParser, ExecutorMode.VIRTUAL, directory);
+            // The pipeline reads through its own asynchronous channels, so it only runs on local files
+            run("local, pipeline", localParser, ExecutorMode.PIPELINE, directory);
+            run("slow,  4 platform threads", slowParser, ExecutorMode.PLATFORM, directory);
+            run("slow,  virtual threads", slowParser, ExecutorMode.VIRTUAL, directory);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(String label, DeckParser parser, ExecutorMode mode, Path directory) throws Exception {
+        FileProcessor processor = new FileProcessor(4, parser);
+        processor.setExecutorMode(mode);
+        processor.aggregateDirectory(directory, "provision");
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            processor.aggregateDirectory(directory, "provision");
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-28s best %6d ms%n", label, best / 1_000_000);
+    }
+
+    /**
+     * Stands in for network storage: every open and every read call blocks for a while.
+     */
+    private static class SlowStorageParser extends DeckParser {
+        private final long openLatency;
+        private final long readLatency;
+
+        SlowStorageParser(long openLatency, long readLatency) {
+            this.openLatency = openLatency;
+            this.readLatency = readLatency;
+        }
+
+        @Override
+        protected InputStream openRawInput(FileSlice slice) throws IOException {
+            sleep(openLatency);
+            return new FilterInputStream(super.openRawInput(slice)) {
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    sleep(readLatency);
+                    return super.read(buffer, offset, length);
+                }
+            };
+        }
+
+        private static void sleep(long millis) throws InterruptedIOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -1,14 +1,35 @@
 package com.github.duskmage2009.processor;
 
+import com.github.duskmage2009.cache.DeckSnapshot;
+import com.github.duskmage2009.cache.FileManifest;
+import com.github.duskmage2009.cache.SnapshotCache;
 import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.parser.DeckParser;
+import com.github.duskmage2009.parser.FileSlice;
+import com.github.duskmage2009.parser.JsonArraySplitter;
+import com.github.duskmage2009.parser.JsonLinesSplitter;
+import com.github.duskmage2009.statistics.MultiStatisticsAccumulator;
+import com.github.duskmage2009.statistics.StatisticsAccumulator;
+import com.github.duskmage2009.statistics.StatisticsCalculator;
+import com.github.duskmage2009.statistics.StatisticsCube;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -166,4 +187,587 @@ class FileProcessorTest {
             assertEquals(10, decks.size(), "Should process all files with " + threads + " threads");
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testAggregateDirectoryMatchesListBasedStatistics(@TempDir Path tempDir) throws IOException, InterruptedException {
+        for (int i = 1; i <= 4; i++) {
+            String json = String.format("""
+                    [
+                      {
+                        "name": "Deck %d-a",
+                        "faction": "Monsters",
+                        "leaderAbility": "Ability %d",
+                        "provisionLimit": 150,
+                        "categories": "Swarm, Tempo",
+                        "cards": [
+                          {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"},
+                          {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}
+                        ]
+                      },
+                      {
+                        "name": "Deck %d-b",
+                        "faction": "Skellige",
+                        "leaderAbility": "Ability %d",
+                        "provisionLimit": 150,
+                        "categories": "Control",
+                        "cards": [
+                          {"name": "Svalblod Priest", "provision": 5, "power": 4, "type": "Unit", "faction": "Skellige"},
+                          {"name": "Blood Eagle", "provision": 6, "power": 0, "type": "Special", "faction": "Neutral"}
+                        ]
+                      }
+                    ]
+                    """, i, i, i, i);
+            Files.writeString(tempDir.resolve("decks" + i + ".json"), json);
+        }
+        Files.writeString(tempDir.resolve("invalid.json"), "{ invalid json }");
+
+        StatisticsCalculator calculator = new StatisticsCalculator();
+        List<Deck> decks = processor.processDirectory(tempDir);
+
+        for (String attribute : List.of("faction", "type", "provision", "power",
+                "leaderAbility", "totalPower", "deckFaction", "categories")) {
+            StatisticsAccumulator accumulator = processor.aggregateDirectory(tempDir, attribute);
+
+            assertEquals(calculator.calculateStatistics(decks, attribute), accumulator.getStatistics(), attribute);
+            assertEquals(8, accumulator.getDeckCount());
+            assertEquals(16, accumulator.getCardCount());
+            assertEquals(40, accumulator.getTotalUnitPower());
+        }
+    }
+
+    @Test
+    void testAggregateDirectoryRejectsUnsupportedAttribute(@TempDir Path tempDir) {
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.aggregateDirectory(tempDir, "unsupported"));
+    }
+
+    @Test
+    void testProcessSplitJsonLinesFileInOrder(@TempDir Path tempDir) throws IOException, InterruptedException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 200; i++) {
+            lines.append(String.format(
+                    "{\"name\": \"Deck %d\", \"faction\": \"Skellige\", \"leaderAbility\": \"Ability %d\", "
+                            + "\"provisionLimit\": 150, \"categories\": \"Midrange\", \"cards\": []}%n", i, i % 7));
+        }
+        Files.writeString(tempDir.resolve("decks.jsonl"), lines.toString());
+
+        FileProcessor splitting = new FileProcessor(4);
+        splitting.setSliceSize(1024);
+
+        List<Deck> decks = splitting.processDirectory(tempDir);
+
+        assertEquals(200, decks.size());
+        for (int i = 0; i < decks.size(); i++) {
+            assertEquals("Deck " + (i + 1), decks.get(i).getName());
+        }
+        assertEquals(new StatisticsCalculator().calculateStatistics(decks, "leaderAbility"),
+                splitting.aggregateDirectory(tempDir, "leaderAbility").getStatistics());
+    }
+
+    @Test
+    void testSplitterFailingPartWayDoesNotCountSlicesTwice(@TempDir Path tempDir)
+            throws IOException, InterruptedException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 200; i++) {
+            lines.append(String.format(
+                    "{\"name\": \"Deck %d\", \"faction\": \"Skellige\", \"cards\": []}%n", i));
+        }
+        Path file = tempDir.resolve("decks.jsonl");
+        Files.writeString(file, lines.toString());
+        List<FileSlice> slices = new JsonLinesSplitter().split(file, 1024);
+        long decksInTwoSlices = Files.readString(file).substring(0, (int) slices.get(1).getEnd())
+                .chars().filter(c -> c == '\n').count();
+
+        FileProcessor failing = new FileProcessor(4);
+        failing.setSliceSize(1024);
+        failing.setSplitters(new JsonLinesSplitter() {
+            @Override
+            public void split(Path splitFile, long targetSliceSize, Consumer<FileSlice> sliceConsumer)
+                    throws IOException {
+                sliceConsumer.accept(slices.get(0));
+                sliceConsumer.accept(slices.get(1));
+                throw new IOException("Disk error");
+            }
+        }, new JsonArraySplitter());
+
+        // The slices already handed out are counted once, and the file is not parsed whole on top
+        assertEquals(decksInTwoSlices, failing.aggregateDirectory(tempDir, "deckFaction").getDeckCount());
+        assertEquals(decksInTwoSlices, failing.processDirectory(tempDir).size());
+        assertTrue(decksInTwoSlices < 200);
+    }
+
+    @Test
+    void testProcessSplitArrayFileInOrder(@TempDir Path tempDir) throws IOException, InterruptedException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 1; i <= 150; i++) {
+            if (i > 1) json.append(",");
+            json.append(String.format("""
+                    {"name": "Deck %d", "faction": "Nilfgaard", "leaderAbility": "Ability %d", "provisionLimit": 150,
+                     "categories": "Control", "cards": [{"name": "Alba Armored Cavalry", "provision": 5, "power": 5,
+                     "type": "Unit", "faction": "Nilfgaard"}]}
+                    """, i, i % 5));
+        }
+        json.append("]");
+        Files.writeString(tempDir.resolve("big_array.json"), json.toString());
+        Files.writeString(tempDir.resolve("single.json"), """
+                {"name": "Single", "faction": "Skellige", "leaderAbility": "Ability 0", "provisionLimit": 150, "cards": []}
+                """);
+
+        FileProcessor splitting = new FileProcessor(3);
+        splitting.setSliceSize(2048);
+
+        List<Deck> decks = splitting.processDirectory(tempDir);
+        List<Deck> expected = new FileProcessor(1).processDirectory(tempDir);
+
+        assertEquals(151, decks.size());
+        assertEquals(expected, decks);
+        assertEquals(new StatisticsCalculator().calculateStatistics(expected, "leaderAbility"),
+                splitting.aggregateDirectory(tempDir, "leaderAbility").getStatistics());
+    }
+
+    @Test
+    void testProcessGzipFilesAlongsidePlainFiles(@TempDir Path tempDir) throws IOException, InterruptedException {
+        String json = """
+                [
+                  {"name": "Packed 1", "faction": "Syndicate", "leaderAbility": "A", "provisionLimit": 150, "cards": []},
+                  {"name": "Packed 2", "faction": "Syndicate", "leaderAbility": "B", "provisionLimit": 150, "cards": []}
+                ]
+                """;
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempDir.resolve("archive.json.gz")))) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.writeString(tempDir.resolve("plain.json"), """
+                {"name": "Plain", "faction": "Skellige", "leaderAbility": "C", "provisionLimit": 150, "cards": []}
+                """);
+        Files.writeString(tempDir.resolve("notes.gz"), "not a deck file");
+
+        FileProcessor tinySlices = new FileProcessor(2);
+        tinySlices.setSliceSize(16);
+
+        List<Deck> decks = tinySlices.processDirectory(tempDir);
+
+        assertEquals(3, decks.size());
+        assertTrue(decks.stream().anyMatch(deck -> deck.getName().equals("Packed 2")));
+    }
+
+    @Test
+    void testSnapshotMatchesParsedDecksAndStatistics(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Files.writeString(tempDir.resolve("decks.json"), """
+                [
+                  {"name": "Swarm", "faction": "Monsters", "leaderAbility": "Arachas Queen", "provisionLimit": 150,
+                   "categories": "Swarm, Tempo", "cards": [
+                     {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"},
+                     {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"},
+                     {"name": "Blood Eagle", "provision": 6, "power": 0, "type": "Special", "faction": "Neutral"}
+                   ]},
+                  {"name": "Empty", "faction": "Skellige", "cards": []}
+                ]
+                """);
+        Files.writeString(tempDir.resolve("more.jsonl"), """
+                {"name": "Lines", "faction": "Syndicate", "leaderAbility": "Off the Books", "categories": "Control", "cards": [{"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]}
+                """);
+        Files.writeString(tempDir.resolve("invalid.json"), "{ invalid json }");
+
+        List<Deck> decks = processor.processDirectory(tempDir);
+        DeckSnapshot snapshot = processor.openSnapshot(tempDir);
+
+        assertTrue(Files.exists(tempDir.resolve(SnapshotCache.FILE_NAME)));
+        assertEquals(decks.size(), snapshot.getDeckCount());
+        assertEquals(2, snapshot.getCardTableSize());
+        List<Deck> rebuilt = new ArrayList<>();
+        snapshot.forEachDeck(rebuilt::add);
+        assertEquals(decks, rebuilt);
+
+        StatisticsCalculator calculator = new StatisticsCalculator();
+        for (String attribute : List.of("faction", "type", "provision", "power", "leaderAbility", "totalPower",
+                "deckFaction", "categories", "provisionUsedQuantiles", "cardCountQuantiles")) {
+            StatisticsAccumulator fromJson = processor.aggregateDirectory(tempDir, attribute);
+            StatisticsAccumulator fromSnapshot = new StatisticsAccumulator(attribute);
+            fromSnapshot.accept(snapshot);
+
+            assertEquals(fromJson.getStatistics(), fromSnapshot.getStatistics(), attribute);
+            assertEquals(fromJson.getStatistics(), calculator.calculateStatistics(snapshot, attribute), attribute);
+            assertEquals(fromJson.getDeckCount(), fromSnapshot.getDeckCount());
+            assertEquals(fromJson.getCardCount(), fromSnapshot.getCardCount());
+            assertEquals(fromJson.getTotalUnitPower(), fromSnapshot.getTotalUnitPower());
+        }
+
+        StatisticsCube cubeFromJson = processor.aggregateDirectory(tempDir, List.of("deckFaction+type+provision"))
+                .getCubes().get(0);
+        StatisticsCube cubeFromSnapshot = new StatisticsCube(List.of("deckFaction", "type", "provision"));
+        cubeFromSnapshot.accept(snapshot);
+        assertEquals(Map.of(List.of("Monsters", "Unit", "4"), 2L, List.of("Monsters", "Special", "6"), 1L,
+                List.of("Syndicate", "Unit", "4"), 1L), cubeFromJson.getCells());
+        assertEquals(cubeFromJson.getCells(), cubeFromSnapshot.getCells());
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.aggregateDirectoryIncrementally(tempDir, List.of("faction+type")));
+        assertThrows(IllegalArgumentException.class,
+                () -> processor.aggregateDirectoryIncrementally(tempDir, List.of("totalPowerQuantiles")));
+        assertEquals(List.of(3L, 0L, 4L, 4L, 4L, 14L), List.copyOf(processor.aggregateDirectory(
+                tempDir, "provisionUsedQuantiles").getStatistics().values()));
+    }
+
+    @Test
+    void testSnapshotIsReusedUntilInputFilesChange(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path deckFile = tempDir.resolve("deck.json");
+        Files.writeString(deckFile, """
+                {"name": "First", "faction": "Nilfgaard", "leaderAbility": "A", "provisionLimit": 150, "cards": []}
+                """);
+
+        assertEquals(1, processor.openSnapshot(tempDir).getDeckCount());
+        Path snapshotFile = tempDir.resolve(SnapshotCache.FILE_NAME);
+        FileTime written = Files.getLastModifiedTime(snapshotFile);
+        Files.setLastModifiedTime(snapshotFile, FileTime.fromMillis(written.toMillis() - 60_000));
+        FileTime aged = Files.getLastModifiedTime(snapshotFile);
+
+        assertEquals(1, processor.openSnapshot(tempDir).getDeckCount());
+        assertEquals(aged, Files.getLastModifiedTime(snapshotFile), "Unchanged input must not rebuild the snapshot");
+
+        Files.writeString(deckFile, """
+                [
+                  {"name": "First", "faction": "Nilfgaard", "leaderAbility": "A", "provisionLimit": 150, "cards": []},
+                  {"name": "Second", "faction": "Nilfgaard", "leaderAbility": "B", "provisionLimit": 150, "cards": []}
+                ]
+                """);
+        assertEquals(2, processor.openSnapshot(tempDir).getDeckCount());
+
+        Files.writeString(tempDir.resolve("extra.json"), """
+                {"name": "Third", "faction": "Scoia'tael", "leaderAbility": "C", "provisionLimit": 150, "cards": []}
+                """);
+        assertEquals(3, processor.openSnapshot(tempDir).getDeckCount());
+    }
+
+    @Test
+    void testCorruptSnapshotIsRebuilt(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Files.writeString(tempDir.resolve("deck.json"), """
+                {"name": "Only", "faction": "Monsters", "leaderAbility": "A", "provisionLimit": 150, "cards": []}
+                """);
+        Files.write(tempDir.resolve(SnapshotCache.FILE_NAME), new byte[]{0x47, 0x57, 0x4E});
+
+        DeckSnapshot snapshot = processor.openSnapshot(tempDir);
+
+        assertEquals(1, snapshot.getDeckCount());
+        assertEquals("Only", snapshot.getDeck(0).getName());
+    }
+
+    @Test
+    void testIncrementalAggregationFollowsDirectoryChanges(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Files.writeString(tempDir.resolve("a.json"), """
+                {"name": "A", "faction": "Monsters", "leaderAbility": "One", "categories": "Swarm", "cards": [
+                  {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]}
+                """);
+        Files.writeString(tempDir.resolve("b.jsonl"), """
+                {"name": "B1", "faction": "Skellige", "leaderAbility": "Two", "cards": []}
+                {"name": "B2", "faction": "Skellige", "leaderAbility": "Two", "cards": []}
+                """);
+        Files.writeString(tempDir.resolve("invalid.json"), "{ invalid json }");
+
+        assertIncrementalMatchesFullRun(tempDir);
+        assertTrue(Files.exists(tempDir.resolve(FileManifest.FILE_NAME)));
+        assertIncrementalMatchesFullRun(tempDir);
+
+        Files.writeString(tempDir.resolve("c.json"), """
+                {"name": "C", "faction": "Syndicate", "leaderAbility": "One", "categories": "Control, Swarm", "cards": [
+                  {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]}
+                """);
+        assertIncrementalMatchesFullRun(tempDir);
+
+        Files.writeString(tempDir.resolve("b.jsonl"), """
+                {"name": "B1", "faction": "Nilfgaard", "leaderAbility": "Three", "cards": []}
+                """);
+        assertIncrementalMatchesFullRun(tempDir);
+
+        Files.delete(tempDir.resolve("a.json"));
+        assertIncrementalMatchesFullRun(tempDir);
+    }
+
+    @Test
+    void testIncrementalAggregationReusesUnchangedFiles(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path deckFile = tempDir.resolve("deck.json");
+        String json = """
+                {"name": "Cached", "faction": "Monsters", "leaderAbility": "A", "provisionLimit": 150, "cards": []}
+                """;
+        Files.writeString(deckFile, json);
+        assertEquals(1, processor.aggregateDirectoryIncrementally(tempDir, "deckFaction").getDeckCount());
+
+        // Same size and modification time: the file is trusted without being read
+        FileTime modified = Files.getLastModifiedTime(deckFile);
+        Files.writeString(deckFile, "x".repeat(json.length()));
+        Files.setLastModifiedTime(deckFile, modified);
+        StatisticsAccumulator cached = processor.aggregateDirectoryIncrementally(tempDir, "deckFaction");
+        assertEquals(Map.of("Monsters", 1L), cached.getStatistics());
+
+        // A real change is noticed through the modification time
+        Files.writeString(deckFile, json.replace("Monsters", "Skellige"));
+        Files.setLastModifiedTime(deckFile, FileTime.fromMillis(modified.toMillis() + 60_000));
+        assertEquals(Map.of("Skellige", 1L),
+                processor.aggregateDirectoryIncrementally(tempDir, "deckFaction").getStatistics());
+
+        // Only touched: the lookup reads no content, the parsing task's hash keeps the entry
+        FileTime touched = FileTime.fromMillis(modified.toMillis() + 120_000);
+        Files.setLastModifiedTime(deckFile, touched);
+        FileManifest manifest = FileManifest.load(tempDir);
+        assertNull(manifest.lookup(deckFile));
+        assertTrue(manifest.hasContent(deckFile, FileManifest.contentHash(deckFile)));
+        assertEquals(Map.of("Skellige", 1L),
+                processor.aggregateDirectoryIncrementally(tempDir, "deckFaction").getStatistics());
+        assertEquals(touched.toMillis(), FileManifest.load(tempDir).lookup(deckFile).getLastModified());
+    }
+
+    @Test
+    void testExecutorModesMatchPlatformPool(@TempDir Path tempDir) throws IOException, InterruptedException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 100; i++) {
+            lines.append(String.format(
+                    "{\"name\": \"Deck %d\", \"faction\": \"Skellige\", \"leaderAbility\": \"Ability %d\", "
+                            + "\"provisionLimit\": 150, \"cards\": [{\"name\": \"Ghoul\", \"provision\": 4, "
+                            + "\"power\": 3, \"type\": \"Unit\", \"faction\": \"Monsters\"}]}%n", i, i % 3));
+        }
+        Files.writeString(tempDir.resolve("decks.jsonl"), lines.toString());
+        for (int i = 1; i <= 5; i++) {
+            Files.writeString(tempDir.resolve("deck" + i + ".json"), String.format("""
+                    {"name": "Single %d", "faction": "Nilfgaard", "leaderAbility": "Ability %d", "cards": []}
+                    """, i, i));
+        }
+        Files.writeString(tempDir.resolve("invalid.json"), "{ invalid json }");
+
+        List<Deck> expectedDecks = processor.processDirectory(tempDir);
+        Map<String, Long> expectedStatistics = processor.aggregateDirectory(tempDir, "leaderAbility").getStatistics();
+
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            for (int parseParallelism : new int[]{1, 3}) {
+                FileProcessor other = new FileProcessor(2);
+                other.setExecutorMode(mode);
+                other.setParseParallelism(parseParallelism);
+                other.setSliceSize(1024);
+
+                assertEquals(expectedDecks, other.processDirectory(tempDir), mode.toString());
+                assertEquals(expectedStatistics, other.aggregateDirectory(tempDir, "leaderAbility").getStatistics());
+            }
+        }
+    }
+
+    @Test
+    void testDeckFileFinderHonoursDepthAndGlobs(@TempDir Path tempDir) throws IOException {
+        Path season = Files.createDirectories(tempDir.resolve("2024-spring/eu"));
+        Path archive = Files.createDirectories(tempDir.resolve("archive/old"));
+        Files.writeString(tempDir.resolve("top.json"), "{}");
+        Files.writeString(tempDir.resolve("2024-spring/mid.jsonl"), "{}");
+        Files.writeString(season.resolve("deep.json"), "{}");
+        Files.writeString(season.resolve("deep.json.bak"), "{}");
+        Files.writeString(archive.resolve("ancient.json"), "{}");
+
+        DeckFileFinder finder = new DeckFileFinder();
+        assertEquals(List.of(tempDir.resolve("top.json")), finder.find(tempDir));
+
+        finder.setMaxDepth(2);
+        assertEquals(List.of(tempDir.resolve("2024-spring/mid.jsonl"), tempDir.resolve("top.json")),
+                finder.find(tempDir));
+
+        finder.setMaxDepth(Integer.MAX_VALUE);
+        assertEquals(List.of(season.resolve("deep.json"), tempDir.resolve("2024-spring/mid.jsonl"),
+                archive.resolve("ancient.json"), tempDir.resolve("top.json")), finder.find(tempDir));
+
+        finder.addExclude("archive");
+        finder.addExclude("*.jsonl");
+        assertEquals(List.of(season.resolve("deep.json"), tempDir.resolve("top.json")), finder.find(tempDir));
+
+        finder.addInclude("2024-*/eu/*");
+        assertEquals(List.of(season.resolve("deep.json"), season.resolve("deep.json.bak")), finder.find(tempDir));
+        assertTrue(finder.matches(tempDir, season.resolve("new.json")));
+        assertFalse(finder.matches(tempDir, tempDir.resolve("top.json")));
+    }
+
+    @Test
+    void testRecursiveAggregationMatchesFlatDirectory(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path flat = Files.createDirectory(tempDir.resolve("flat"));
+        Path nested = Files.createDirectory(tempDir.resolve("nested"));
+        for (int i = 1; i <= 30; i++) {
+            String deck = String.format("""
+                    {"name": "Deck %d", "faction": "Skellige", "leaderAbility": "Ability %d", "cards": [
+                      {"name": "Ghoul", "provision": 4, "power": %d, "type": "Unit", "faction": "Monsters"}
+                    ]}
+                    """, i, i % 4, i % 7);
+            Files.writeString(flat.resolve("deck" + i + ".json"), deck);
+            Path directory = Files.createDirectories(nested.resolve("level" + i % 3 + "/sub" + i % 5));
+            Files.writeString(directory.resolve("deck" + i + ".json"), deck);
+        }
+
+        StatisticsAccumulator expected = processor.aggregateDirectory(flat, "leaderAbility");
+        assertEquals(0, processor.aggregateDirectory(nested, "leaderAbility").getDeckCount());
+
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            FileProcessor recursive = new FileProcessor(2);
+            recursive.setExecutorMode(mode);
+            recursive.getFileFinder().setMaxDepth(3);
+
+            StatisticsAccumulator actual = recursive.aggregateDirectory(nested, "leaderAbility");
+            assertEquals(expected.getStatistics(), actual.getStatistics(), mode.toString());
+            assertEquals(30, actual.getDeckCount());
+            assertEquals(30, recursive.processDirectory(nested).size());
+        }
+    }
+
+    @Test
+    void testProcessMissingDirectoryFails(@TempDir Path tempDir) {
+        Path missing = tempDir.resolve("missing");
+
+        assertThrows(IOException.class, () -> processor.aggregateDirectory(missing, "faction"));
+        assertThrows(IOException.class, () -> processor.findJsonFiles(missing));
+    }
+
+    @Test
+    void testLargestFilesAreParsedFirst(@TempDir Path tempDir) throws IOException, InterruptedException {
+        String card = "{\"name\": \"Ghoul\", \"provision\": 4, \"power\": 3, \"type\": \"Unit\", \"faction\": \"Monsters\"}";
+        int[] cardCounts = {1, 30, 5, 12};
+        for (int i = 0; i < cardCounts.length; i++) {
+            Files.writeString(tempDir.resolve("deck" + i + ".json"), String.format(
+                    "{\"name\": \"Deck %d\", \"faction\": \"Monsters\", \"cards\": [%s]}",
+                    i, String.join(", ", Collections.nCopies(cardCounts[i], card))));
+        }
+
+        List<String> parseOrder = new ArrayList<>();
+        DeckParser recordingParser = new DeckParser() {
+            @Override
+            protected InputStream openRawInput(FileSlice slice) throws IOException {
+                synchronized (parseOrder) {
+                    parseOrder.add(slice.getFile().getFileName().toString());
+                }
+                return super.openRawInput(slice);
+            }
+        };
+        FileProcessor singleThreaded = new FileProcessor(1, recordingParser);
+
+        List<Deck> decks = singleThreaded.processDirectory(tempDir);
+        assertEquals(List.of("deck1.json", "deck3.json", "deck2.json", "deck0.json"), parseOrder);
+        assertEquals(List.of("Deck 0", "Deck 1", "Deck 2", "Deck 3"), decks.stream().map(Deck::getName).toList());
+
+        parseOrder.clear();
+        singleThreaded.setLargestFirst(false);
+        assertEquals(decks, singleThreaded.processDirectory(tempDir));
+        assertEquals(List.of("deck0.json", "deck1.json", "deck2.json", "deck3.json"), parseOrder);
+    }
+
+    @Test
+    void testHeapBudgetAdmitsOversizedSliceAlone(@TempDir Path tempDir) throws Exception {
+        HeapBudget budget = new HeapBudget(4 * 1024 * 1024, 1.0);
+        FileSlice huge = FileSlice.wholeFile(tempDir.resolve("huge.json"));
+        FileSlice small = FileSlice.wholeFile(tempDir.resolve("small.json"));
+
+        int reservation = budget.acquire(huge, 10L * 1024 * 1024);
+        assertEquals(0, budget.acquire(small, 100 * 1024));
+
+        Thread second = new Thread(() -> {
+            try {
+                budget.release(budget.acquire(huge, 10L * 1024 * 1024));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        second.start();
+        second.join(200);
+        assertTrue(second.isAlive());
+
+        budget.release(reservation);
+        second.join(5000);
+        assertFalse(second.isAlive());
+        assertEquals(1, budget.getWaitCount());
+        assertEquals(4L * 1024 * 1024, budget.getPeakReservedBytes());
+    }
+
+    @Test
+    void testTinyHeapBudgetStillProcessesEveryFile(@TempDir Path tempDir) throws IOException, InterruptedException {
+        for (int i = 1; i <= 12; i++) {
+            Files.writeString(tempDir.resolve("deck" + i + ".json"), String.format("""
+                    {"name": "Deck %d", "faction": "Nilfgaard", "leaderAbility": "Ability %d", "cards": [
+                      {"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}
+                    ]}
+                    """, i, i % 3));
+        }
+        List<Deck> expected = processor.processDirectory(tempDir);
+
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            FileProcessor throttled = new FileProcessor(3);
+            throttled.setExecutorMode(mode);
+            throttled.setHeapBudget(1);
+            throttled.setHeapBytesPerFileByte(1_000_000);
+
+            assertEquals(expected, throttled.processDirectory(tempDir), mode.toString());
+        }
+    }
+
+    @Test
+    void testAggregateAllAttributesInOnePass(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Files.writeString(tempDir.resolve("decks.jsonl"), """
+                {"name": "A", "faction": "Skellige", "leaderAbility": "X", "categories": "Tempo", "cards": [{"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}]}
+                {"name": "B", "faction": "Nilfgaard", "leaderAbility": "Y", "categories": "Control, Tempo", "cards": [{"name": "Ghoul", "provision": 4, "power": 3, "type": "Unit", "faction": "Monsters"}, {"name": "Spell", "provision": 7, "power": 0, "type": "Special", "faction": "Neutral"}]}
+                """);
+        Files.writeString(tempDir.resolve("broken.json"), "{ invalid json }");
+
+        List<String> attributes = StatisticsAccumulator.ATTRIBUTES;
+        MultiStatisticsAccumulator all = processor.aggregateDirectory(tempDir, attributes);
+        MultiStatisticsAccumulator incremental = processor.aggregateDirectoryIncrementally(tempDir, attributes);
+
+        for (String attribute : attributes) {
+            StatisticsAccumulator single = processor.aggregateDirectory(tempDir, attribute);
+            assertEquals(single.getStatistics(), all.getAccumulator(attribute).getStatistics(), attribute);
+            assertEquals(single.getStatistics(), incremental.getAccumulator(attribute).getStatistics(), attribute);
+        }
+        assertEquals(2, all.getDeckCount());
+        assertEquals(3, all.getCardCount());
+    }
+
+    private void assertIncrementalMatchesFullRun(Path directory) throws IOException, InterruptedException {
+        for (String attribute : List.of("faction", "type", "provision", "power",
+                "leaderAbility", "totalPower", "deckFaction", "categories")) {
+            StatisticsAccumulator full = processor.aggregateDirectory(directory, attribute);
+            StatisticsAccumulator incremental = processor.aggregateDirectoryIncrementally(directory, attribute);
+
+            assertEquals(full.getStatistics(), incremental.getStatistics(), attribute);
+            assertEquals(full.getDeckCount(), incremental.getDeckCount());
+            assertEquals(full.getCardCount(), incremental.getCardCount());
+            assertEquals(full.getTotalUnitPower(), incremental.getTotalUnitPower());
+        }
+    }
+
+    @Test
+    void testDirectoryWatcherAppliesCreatedModifiedAndDeletedFiles(@TempDir Path tempDir) throws Exception {
+        Files.writeString(tempDir.resolve("first.json"), """
+                {"name": "First", "faction": "Monsters", "leaderAbility": "A", "cards": []}
+                """);
+        List<Map<String, Long>> published = new ArrayList<>();
+
+        try (DirectoryWatcher watcher = new DirectoryWatcher(processor, tempDir, "deckFaction",
+                accumulator -> published.add(accumulator.getStatistics()))) {
+            watcher.setDebounceMillis(50);
+            assertEquals(Map.of("Monsters", 1L), watcher.start().getStatistics());
+
+            Files.writeString(tempDir.resolve("second.jsonl"), """
+                    {"name": "Second", "faction": "Skellige", "leaderAbility": "B", "cards": []}
+                    {"name": "Third", "faction": "Skellige", "leaderAbility": "C", "cards": []}
+                    """);
+            Files.writeString(tempDir.resolve("notes.txt"), "not a deck file");
+            awaitStatistics(watcher, Map.of("Monsters", 1L, "Skellige", 2L));
+
+            Files.writeString(tempDir.resolve("first.json"), """
+                    {"name": "First", "faction": "Nilfgaard", "leaderAbility": "A", "cards": []}
+                    """);
+            awaitStatistics(watcher, Map.of("Nilfgaard", 1L, "Skellige", 2L));
+
+            Files.delete(tempDir.resolve("second.jsonl"));
+            awaitStatistics(watcher, Map.of("Nilfgaard", 1L));
+            assertEquals(1, watcher.getStatistics().getDeckCount());
+        }
+
+        assertEquals(Map.of("Monsters", 1L), published.get(0));
+        assertEquals(Map.of("Nilfgaard", 1L), published.get(published.size() - 1));
+    }
+
+    private void awaitStatistics(DirectoryWatcher watcher, Map<String, Long> expected)
+            throws IOException, InterruptedException {
+        for (int batch = 0; batch < 20 && !expected.equals(watcher.getStatistics().getStatistics()); batch++) {
+            watcher.processNextBatch(1, TimeUnit.SECONDS);
+        }
+        assertEquals(expected, watcher.getStatistics().getStatistics());
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.duskmage2009.statistics;
+
+import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardType;
+import com.github.duskmage2009.model.Deck;
+import com.github.duskmage2009.model.Faction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual benchmark printing the scaling curve of the parallel aggregation in
+ * {@link StatisticsCalculator}, counting every attribute over in-memory decks with 1 to N threads.
+ * Not run by the test suite:
+ * <pre>
+ * java -cp target/classes:target/test-classes:&lt;dependencies&gt; \
+ *      com.github.duskmage2009.statistics.StatisticsCalculatorBenchmark [deck_count] [max_threads]
+ * </pre>
+ */
+public class StatisticsCalculatorBenchmark {
+    private static final int CARDS_PER_DECK = 25;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int deckCount = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        List<Deck> decks = createDecks(deckCount);
+        System.out.printf("%d decks of %d cards, %d processors, Java %s%n", deckCount, CARDS_PER_DECK,
+                Runtime.getRuntime().availableProcessors(), Runtime.version());
+
+        long baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long best = run(new StatisticsCalculator(threads), decks);
+            if (threads == 1) {
+                baseline = best;
+            }
+            System.out.printf("%3d threads  best %6d ms  speedup %.2fx%n",
+                    threads, best / 1_000_000, (double) baseline / best);
+            if (threads < maxThreads && threads * 2 > maxThreads) {
+                threads = maxThreads / 2;
+            }
+        }
+    }
+
+    private static long run(StatisticsCalculator calculator, List<Deck> decks) {
+        calculator.aggregate(decks, StatisticsAccumulator.ATTRIBUTES);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            calculator.aggregate(decks, StatisticsAccumulator.ATTRIBUTES);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static List<Deck> createDecks(int deckCount) {
+        Random random = new Random(1);
+        Faction[] factions = Faction.values();
+        CardType[] types = CardType.values();
+        List<Card> pool = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            pool.add(new Card("Card " + i, 4 + random.nextInt(12), random.nextInt(14),
+                    types[random.nextInt(types.length)], factions[random.nextInt(factions.length)]));
+        }
+
+        List<Deck> decks = new ArrayList<>(deckCount);
+        for (int i = 0; i < deckCount; i++) {
+            List<Card> cards = new ArrayList<>(CARDS_PER_DECK);
+            for (int j = 0; j < CARDS_PER_DECK; j++) {
+                cards.add(pool.get(random.nextInt(pool.size())));
+            }
+            decks.add(new Deck("Deck " + i, factions[random.nextInt(factions.length)],
+                    "Ability " + random.nextInt(40), 150, "Tempo, Swarm", cards));
+        }
+        return decks;
+    }
+}
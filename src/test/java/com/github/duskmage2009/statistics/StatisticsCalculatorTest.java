@@ -1,6 +1,7 @@
 package com.github.duskmage2009.statistics;
 
 import com.github.duskmage2009.model.Card;
+import com.github.duskmage2009.model.CardCopies;
 import com.github.duskmage2009.model.CardType;
 import com.github.duskmage2009.model.Deck;
 import com.github.duskmage2009.model.Faction;
@@ -8,8 +9,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,7 +51,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateFactionStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "faction");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "faction");
 
         assertNotNull(stats);
         assertEquals(2, stats.size());
@@ -56,7 +61,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateTypeStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "type");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "type");
 
         assertNotNull(stats);
         assertEquals(3, stats.size());
@@ -67,7 +72,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateProvisionStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "provision");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "provision");
 
         assertNotNull(stats);
         assertTrue(stats.containsKey("4"));
@@ -82,7 +87,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculatePowerStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "power");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "power");
 
         assertNotNull(stats);
         assertEquals(3, stats.get("3"));
@@ -91,7 +96,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateLeaderAbilityStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "leaderAbility");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "leaderAbility");
 
         assertNotNull(stats);
         assertEquals(2, stats.size());
@@ -101,7 +106,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateTotalPowerStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "totalPower");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "totalPower");
 
         assertNotNull(stats);
         assertEquals(2, stats.get("1-50"));
@@ -109,7 +114,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateDeckFactionStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "deckFaction");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "deckFaction");
 
         assertNotNull(stats);
         assertEquals(2, stats.size());
@@ -119,7 +124,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testCalculateCategoriesStatistics() {
-        Map<String, Integer> stats = calculator.calculateStatistics(testDecks, "categories");
+        Map<String, Long> stats = calculator.calculateStatistics(testDecks, "categories");
 
         assertNotNull(stats);
         assertEquals(4, stats.size());
@@ -146,9 +151,9 @@ class StatisticsCalculatorTest {
                 new Deck("Test", Faction.NORTHERN_REALMS, "Test", 150, "Control", manyCards)
         );
 
-        Map<String, Integer> stats = calculator.calculateStatistics(decks, "faction");
+        Map<String, Long> stats = calculator.calculateStatistics(decks, "faction");
 
-        List<Map.Entry<String, Integer>> entries = new ArrayList<>(stats.entrySet());
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(stats.entrySet());
 
         assertEquals("Northern Realms", entries.get(0).getKey());
         assertEquals(10, entries.get(0).getValue());
@@ -170,7 +175,7 @@ class StatisticsCalculatorTest {
 
     @Test
     void testEmptyDeckList() {
-        Map<String, Integer> stats = calculator.calculateStatistics(new ArrayList<>(), "faction");
+        Map<String, Long> stats = calculator.calculateStatistics(new ArrayList<>(), "faction");
         assertNotNull(stats);
         assertTrue(stats.isEmpty());
     }
@@ -200,7 +205,7 @@ class StatisticsCalculatorTest {
                 new Deck("Mixed", Faction.MONSTERS, "Test", 150, "Mixed", mixedCards)
         );
 
-        Map<String, Integer> stats = calculator.calculateStatistics(decks, "power");
+        Map<String, Long> stats = calculator.calculateStatistics(decks, "power");
 
         assertEquals(1, stats.size());
         assertEquals(1, stats.get("5"));
@@ -212,7 +217,7 @@ class StatisticsCalculatorTest {
                 new Deck("Empty Cat", Faction.SKELLIGE, "Test", 150, "", new ArrayList<>())
         );
 
-        Map<String, Integer> stats = calculator.calculateStatistics(decks, "categories");
+        Map<String, Long> stats = calculator.calculateStatistics(decks, "categories");
         assertTrue(stats.isEmpty());
     }
 
@@ -222,9 +227,504 @@ class StatisticsCalculatorTest {
                 new Deck("Whitespace", Faction.SCOIATAEL, "Test", 150, "  Control  ,  Tempo  ", new ArrayList<>())
         );
 
-        Map<String, Integer> stats = calculator.calculateStatistics(decks, "categories");
+        Map<String, Long> stats = calculator.calculateStatistics(decks, "categories");
         assertEquals(2, stats.size());
         assertEquals(1, stats.get("Control"));
         assertEquals(1, stats.get("Tempo"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testMergedAccumulatorsMatchCalculator() {
+        StatisticsAccumulator first = new StatisticsAccumulator("categories");
+        StatisticsAccumulator second = new StatisticsAccumulator("categories");
+        first.accept(testDecks.get(0));
+        second.accept(testDecks.get(1));
+
+        first.merge(second);
+
+        assertEquals(calculator.calculateStatistics(testDecks, "categories"), first.getStatistics());
+        assertEquals(2, first.getDeckCount());
+        assertEquals(6, first.getCardCount());
+        assertEquals(14, first.getTotalUnitPower());
+    }
+
+    @Test
+    void testMergeRejectsDifferentAttribute() {
+        StatisticsAccumulator faction = new StatisticsAccumulator("faction");
+        StatisticsAccumulator type = new StatisticsAccumulator("type");
+
+        assertThrows(IllegalArgumentException.class, () -> faction.merge(type));
+    }
+
+    @Test
+    void testSubtractRemovesMergedContribution() {
+        StatisticsAccumulator total = new StatisticsAccumulator("categories");
+        StatisticsAccumulator second = new StatisticsAccumulator("categories");
+        total.accept(testDecks.get(0));
+        second.accept(testDecks.get(1));
+        total.merge(second);
+
+        total.subtract(second);
+
+        assertEquals(calculator.calculateStatistics(testDecks.subList(0, 1), "categories"), total.getStatistics());
+        assertFalse(total.getStatistics().containsValue(0));
+        assertEquals(1, total.getDeckCount());
+    }
+
+    @Test
+    void testDeckStoresCopiesOfEachCardAsOneEntry() {
+        Card ghoul = new Card("Ghoul", 4, 3, CardType.UNIT, Faction.MONSTERS);
+        Card nekker = new Card("Nekker", 4, 2, CardType.UNIT, Faction.MONSTERS);
+        List<Card> cards = List.of(ghoul, ghoul, ghoul, nekker, ghoul);
+
+        Deck deck = new Deck("Copies", Faction.MONSTERS, "Test", 150, "Swarm", cards);
+
+        assertEquals(List.of(new CardCopies(ghoul, 4), new CardCopies(nekker, 1)), deck.getCardCopies());
+        assertEquals(List.of(ghoul, ghoul, ghoul, ghoul, nekker), deck.getCards());
+        assertEquals(5, deck.getCardCount());
+        assertEquals(14, deck.getTotalUnitPower());
+        assertEquals(20, deck.getTotalProvisionUsed());
+
+        Map<String, Long> stats = calculator.calculateStatistics(List.of(deck), "power");
+        assertEquals(4, stats.get("3"));
+        assertEquals(1, stats.get("2"));
+    }
+
+    @Test
+    void testMultiAccumulatorMatchesSingleAttributeStatistics() {
+        MultiStatisticsAccumulator all = new MultiStatisticsAccumulator(
+                MultiStatisticsAccumulator.parseAttributes("all"));
+        testDecks.forEach(all);
+
+        assertEquals(StatisticsAccumulator.ATTRIBUTES.size(), all.getAccumulators().size());
+        for (String attribute : StatisticsAccumulator.ATTRIBUTES) {
+            StatisticsAccumulator single = new StatisticsAccumulator(attribute);
+            testDecks.forEach(single);
+
+            StatisticsAccumulator multi = all.getAccumulator(attribute);
+            assertEquals(single.getStatistics(), multi.getStatistics(), attribute);
+            assertEquals(single.getDeckCount(), multi.getDeckCount());
+            assertEquals(single.getCardCount(), multi.getCardCount());
+            assertEquals(single.getTotalUnitPower(), multi.getTotalUnitPower());
+        }
+        assertEquals(2, all.getDeckCount());
+        assertEquals(6, all.getCardCount());
+    }
+
+    @Test
+    void testParseAttributeList() {
+        assertEquals(List.of("faction", "cardType", "type"),
+                MultiStatisticsAccumulator.parseAttributes(" faction, cardType,,type "));
+        assertEquals(StatisticsAccumulator.ATTRIBUTES, MultiStatisticsAccumulator.parseAttributes("ALL"));
+
+        MultiStatisticsAccumulator accumulator = new MultiStatisticsAccumulator(
+                MultiStatisticsAccumulator.parseAttributes("faction,cardType,type"));
+        assertEquals(List.of("faction", "cardType"),
+                accumulator.getAccumulators().stream().map(StatisticsAccumulator::getAttribute).toList());
+        assertThrows(IllegalArgumentException.class, () -> accumulator.getAccumulator("power"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultiStatisticsAccumulator(MultiStatisticsAccumulator.parseAttributes("faction,colour")));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultiStatisticsAccumulator(MultiStatisticsAccumulator.parseAttributes(" , ")));
+    }
+
+    @Test
+    void testCountsBeyondIntRange() {
+        long large = Integer.MAX_VALUE + 10L;
+        StatisticsAccumulator accumulator = new StatisticsAccumulator("faction",
+                Map.of("Monsters", large, "UNKNOWN", 1L), 2, large, 0);
+        accumulator.merge(new StatisticsAccumulator("faction",
+                Map.of("Monsters", large), 1, large, 0));
+
+        assertEquals(Map.of("Monsters", 2 * large, "UNKNOWN", 1L), accumulator.getStatistics());
+        assertEquals(2 * large, accumulator.getCardCount());
+    }
+
+    @Test
+    void testNumericValuesOutsideDenseRange() {
+        List<Card> cards = List.of(
+                new Card("Giant", 40, 35, CardType.UNIT, Faction.MONSTERS),
+                new Card("Cursed", 4, -2, CardType.UNIT, Faction.MONSTERS),
+                new Card("Blank", null, null, CardType.UNIT, Faction.MONSTERS),
+                new Card("Trap", 5, 9, CardType.SPECIAL, Faction.MONSTERS)
+        );
+        List<Deck> decks = List.of(new Deck("Odd", Faction.MONSTERS, "Test", 150, "Swarm", cards));
+
+        assertEquals(Map.of("35", 1L, "-2", 1L, "0", 1L), calculator.calculateStatistics(decks, "power"));
+        assertEquals(Map.of("40", 1L, "4", 1L, "5", 1L, "UNKNOWN", 1L),
+                calculator.calculateStatistics(decks, "provision"));
+
+        StatisticsAccumulator power = new StatisticsAccumulator("power");
+        decks.forEach(power);
+        StatisticsAccumulator restored = new StatisticsAccumulator("power", power.getStatistics(), 1, 4, 0);
+        restored.subtract(power);
+        assertTrue(restored.getStatistics().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> new StatisticsAccumulator("power", Map.of("strong", 1L), 1, 1, 0));
+    }
+
+    @Test
+    void testParallelAggregationMatchesSequential() {
+        Random random = new Random(42);
+        Faction[] factions = Faction.values();
+        CardType[] types = CardType.values();
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < 5 * StatisticsCalculator.MIN_SPLIT_DECKS + 17; i++) {
+            List<Card> cards = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                cards.add(new Card("Card " + random.nextInt(100), 4 + random.nextInt(12), random.nextInt(40),
+                        types[random.nextInt(types.length)], factions[random.nextInt(factions.length)]));
+            }
+            decks.add(new Deck("Deck " + i, factions[random.nextInt(factions.length)], "Ability " + random.nextInt(30),
+                    150, "Tempo, Category " + random.nextInt(5), cards));
+        }
+
+        StatisticsCalculator sequential = new StatisticsCalculator();
+        StatisticsCalculator parallel = new StatisticsCalculator(4);
+        for (String attribute : StatisticsAccumulator.ATTRIBUTES) {
+            assertEquals(List.copyOf(sequential.calculateStatistics(decks, attribute).entrySet()),
+                    List.copyOf(parallel.calculateStatistics(decks, attribute).entrySet()), attribute);
+        }
+
+        MultiStatisticsAccumulator all = parallel.aggregate(new LinkedList<>(decks), StatisticsAccumulator.ATTRIBUTES);
+        assertEquals(decks.size(), all.getDeckCount());
+        assertEquals(10L * decks.size(), all.getCardCount());
+        assertEquals(sequential.calculateStatistics(decks, "power"), all.getAccumulator("power").getStatistics());
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCalculator(0));
+    }
+
+    @Test
+    void testTopKSketchReportsHeavyHittersWithinErrorBounds() {
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 500 - 50 * i; j++) {
+                decks.add(new Deck("Deck", Faction.MONSTERS, "Heavy " + i, 150, "Tempo", List.of()));
+            }
+        }
+        for (int i = 0; i < 3000; i++) {
+            decks.add(new Deck("Deck", Faction.MONSTERS, "Rare " + i, 150, "Tempo", List.of()));
+        }
+        Collections.shuffle(decks, new Random(7));
+
+        // Four thread-confined partials merged, as in a parallel run
+        StatisticsAccumulator sketch = new StatisticsAccumulator("leaderAbility", 5);
+        for (int part = 0; part < 4; part++) {
+            StatisticsAccumulator partial = new StatisticsAccumulator("leaderAbility", 5);
+            decks.subList(part * decks.size() / 4, (part + 1) * decks.size() / 4).forEach(partial);
+            sketch.merge(partial);
+        }
+        Map<String, Long> exact = calculator.calculateStatistics(decks, "leaderAbility");
+
+        assertTrue(sketch.isApproximate());
+        assertEquals(List.of("Heavy 0", "Heavy 1", "Heavy 2", "Heavy 3", "Heavy 4"),
+                List.copyOf(sketch.getStatistics().keySet()));
+        Map<String, Long> errors = sketch.getErrorBounds();
+        sketch.getStatistics().forEach((value, count) -> {
+            assertTrue(count >= exact.get(value), value);
+            assertTrue(count - errors.get(value) <= exact.get(value), value);
+        });
+        long capacity = 5L * StatisticsAccumulator.SKETCH_VALUES_PER_TOP_VALUE;
+        assertTrue(sketch.getErrorBound() >= 1);
+        assertTrue(sketch.getErrorBound() <= 2 * decks.size() / capacity);
+        exact.forEach((value, count) -> {
+            if (!sketch.getStatistics().containsKey(value)) {
+                assertTrue(count <= sketch.getErrorBound(), value);
+            }
+        });
+        assertEquals(decks.size(), sketch.getDeckCount());
+
+        assertThrows(UnsupportedOperationException.class, () -> sketch.subtract(sketch));
+        assertThrows(IllegalArgumentException.class,
+                () -> sketch.merge(new StatisticsAccumulator("leaderAbility")));
+        // Attributes with few distinct values stay exact
+        assertFalse(new StatisticsAccumulator("faction", 5).isApproximate());
+        assertEquals(0, new StatisticsAccumulator("faction", 5).getErrorBound());
+    }
+
+    @Test
+    void testTopKSketchIsExactBelowCapacity() {
+        StatisticsAccumulator sketch = new StatisticsAccumulator("categories", 2);
+        testDecks.forEach(sketch);
+
+        assertEquals(Map.of("Tempo", 2L, "Control", 1L), sketch.getStatistics());
+        assertEquals(Map.of("Tempo", 0L, "Control", 0L), sketch.getErrorBounds());
+        assertEquals(1, sketch.getErrorBound());
+    }
+
+    @Test
+    void testExactDistinctCounts() {
+        List<Card> cards = List.of(
+                new Card("Card 1", 4, 3, CardType.UNIT, Faction.NORTHERN_REALMS),
+                new Card("Card 2", 4, 3, CardType.UNIT, Faction.MONSTERS)
+        );
+        List<Deck> decks = new ArrayList<>(testDecks);
+        decks.add(new Deck("Deck 3", Faction.MONSTERS, "Ability 1", 150, "Tempo", cards));
+
+        assertEquals(Map.of("Northern Realms", 3L, "Monsters", 4L),
+                calculator.calculateStatistics(decks, "exactDistinctCards"));
+        assertEquals(Map.of("Northern Realms", 1L, "Monsters", 2L),
+                calculator.calculateStatistics(decks, "exactDistinctLeaderAbilities"));
+        assertEquals(calculator.calculateStatistics(decks, "exactDistinctCards"),
+                calculator.calculateStatistics(decks, "distinctCards"));
+    }
+
+    @Test
+    void testHyperLogLogDistinctCountsMergeAndStayAccurate() {
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            List<Card> cards = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                // 25000 distinct Monsters cards, each twice, and 300 distinct Skellige cards
+                cards.add(new Card("Monster " + (i * 10 + j) % 25000, 4, 3, CardType.UNIT, Faction.MONSTERS));
+                cards.add(new Card("Raider " + (i + j) % 300, 4, 3, CardType.UNIT, Faction.SKELLIGE));
+            }
+            decks.add(new Deck("Deck " + i, Faction.SKELLIGE, "Ability " + i % 40, 150, "Tempo", cards));
+        }
+
+        MultiStatisticsAccumulator sequential = new MultiStatisticsAccumulator(StatisticsAccumulator.DISTINCT_ATTRIBUTES);
+        decks.forEach(sequential);
+        MultiStatisticsAccumulator parallel = new StatisticsCalculator(4)
+                .aggregate(decks, StatisticsAccumulator.DISTINCT_ATTRIBUTES);
+
+        Map<String, Long> exact = sequential.getAccumulator("exactDistinctCards").getStatistics();
+        Map<String, Long> estimated = sequential.getAccumulator("distinctCards").getStatistics();
+        assertEquals(Map.of("Monsters", 25000L, "Skellige", 300L), exact);
+        exact.forEach((faction, count) ->
+                assertEquals(count, estimated.get(faction), count * 0.05, faction));
+        assertEquals(Map.of("Skellige", 40L), sequential.getAccumulator("distinctLeaderAbilities").getStatistics());
+
+        // Merging register-wise gives exactly the estimate of one sketch over everything
+        for (String attribute : StatisticsAccumulator.DISTINCT_ATTRIBUTES) {
+            assertEquals(sequential.getAccumulator(attribute).getStatistics(),
+                    parallel.getAccumulator(attribute).getStatistics(), attribute);
+        }
+
+        StatisticsAccumulator distinct = sequential.getAccumulator("distinctCards");
+        assertTrue(distinct.isDistinctCount());
+        assertThrows(UnsupportedOperationException.class, () -> distinct.subtract(distinct));
+        assertFalse(MultiStatisticsAccumulator.parseAttributes("all").contains("distinctCards"));
+    }
+
+    @Test
+    void testCubeCountsEveryCombinationInOnePass() {
+        StatisticsCube cube = new StatisticsCube(List.of("faction", "cardType"));
+        testDecks.forEach(cube);
+
+        assertEquals("faction+type", cube.getName());
+        assertEquals(List.of(
+                List.of("Monsters", "Unit"), List.of("Northern Realms", "Unit"),
+                List.of("Monsters", "Artifact"), List.of("Northern Realms", "Special")),
+                List.copyOf(cube.getCells().keySet()));
+        assertEquals(List.of(2L, 2L, 1L, 1L), List.copyOf(cube.getCells().values()));
+
+        Map<List<String>, Long> byType = cube.rollUp(List.of("type"));
+        Map<String, Long> typeStatistics = calculator.calculateStatistics(testDecks, "type");
+        assertEquals(typeStatistics.size(), byType.size());
+        typeStatistics.forEach((type, count) -> assertEquals(count, byType.get(List.of(type)), type));
+        assertThrows(IllegalArgumentException.class, () -> cube.rollUp(List.of("provision")));
+    }
+
+    @Test
+    void testCubeFallsBackToHashForValuesOutsideDenseRange() {
+        List<Deck> decks = new ArrayList<>(testDecks);
+        decks.add(new Deck("Deck 3", Faction.MONSTERS, "Ability 1", 150, "Tempo",
+                List.of(new Card("Card 7", 40, 12, CardType.UNIT, Faction.MONSTERS))));
+        StatisticsCube cube = new StatisticsCube(List.of("deckFaction", "provision", "power"));
+        decks.forEach(cube);
+
+        Map<List<String>, Long> cells = cube.getCells();
+        assertEquals(1, cells.get(List.of("Monsters", "40", "12")));
+        assertEquals(2, cells.get(List.of("Northern Realms", "4", "3")));
+        // Only units have a power, as in the power statistics
+        assertNull(cells.get(List.of("Northern Realms", "5", "0")));
+        assertEquals(5, cells.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(3, cube.getDeckCount());
+    }
+
+    @Test
+    void testCubesMergeAndRejectUnsupportedDimensions() {
+        StatisticsCube first = new StatisticsCube(StatisticsCube.parseDimensions("deckFaction+totalPower"));
+        StatisticsCube second = new StatisticsCube(StatisticsCube.parseDimensions("deckFaction+totalPower"));
+        first.accept(testDecks.get(0));
+        second.accept(testDecks.get(1));
+        first.merge(second);
+
+        assertEquals(Map.of(List.of("Monsters", "1-50"), 1L, List.of("Northern Realms", "1-50"), 1L),
+                first.getCells());
+        assertEquals(6, first.getCardCount());
+        assertThrows(IllegalArgumentException.class,
+                () -> first.merge(new StatisticsCube(List.of("faction", "type"))));
+
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCube(List.of("faction", "categories")));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCube(List.of("type", "cardType")));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCube(List.of("faction", "distinctCards")));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCube(List.of("faction", "unsupported")));
+    }
+
+    @Test
+    void testMultiAccumulatorCountsCubesWithAttributes() {
+        MultiStatisticsAccumulator all = new MultiStatisticsAccumulator(
+                MultiStatisticsAccumulator.parseAttributes("faction+type,type,FACTION+TYPE"));
+        testDecks.forEach(all);
+        MultiStatisticsAccumulator cubeOnly = new MultiStatisticsAccumulator(List.of("deckFaction+type"));
+        testDecks.forEach(cubeOnly);
+
+        assertEquals(1, all.getAccumulators().size());
+        assertEquals(1, all.getCubes().size());
+        StatisticsCube cube = new StatisticsCube(List.of("faction", "type"));
+        testDecks.forEach(cube);
+        assertEquals(cube.getCells(), all.getCubes().get(0).getCells());
+        assertEquals(2, cubeOnly.getDeckCount());
+        assertEquals(6, cubeOnly.getCardCount());
+        assertEquals(all.getCubes().get(0).getCells(), cubeOnly.getCubes().get(0).getCells());
+    }
+
+    @Test
+    void testRegisteredExtractorIsAttributeAndDimension() {
+        AttributeExtractor cardInitial = new AttributeExtractor("cardInitial", AttributeExtractor.Scope.CARD) {
+            @Override
+            public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+                consumer.accept(card.getName().substring(0, 1));
+            }
+        };
+        AttributeRegistry.register(cardInitial, "initial");
+        try {
+            assertEquals(Map.of("C", 6L), calculator.calculateStatistics(testDecks, "cardInitial"));
+            assertEquals(Map.of("C", 6L), calculator.calculateStatistics(testDecks, "INITIAL"));
+            StatisticsCube cube = new StatisticsCube(List.of("deckFaction", "cardInitial"));
+            testDecks.forEach(cube);
+            assertEquals(Map.of(List.of("Monsters", "C"), 3L, List.of("Northern Realms", "C"), 3L), cube.getCells());
+            assertThrows(IllegalArgumentException.class, () -> AttributeRegistry.register(cardInitial));
+        } finally {
+            AttributeRegistry.unregister("cardInitial");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> AttributeRegistry.get("cardInitial"));
+        assertThrows(IllegalArgumentException.class, () -> AttributeRegistry.get("initial"));
+        assertFalse(AttributeRegistry.getNames().contains("cardInitial"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AttributeRegistry.register(new AttributeExtractor("faction", AttributeExtractor.Scope.CARD) {
+                    @Override
+                    public void values(Card card, DeckFacts deck, Consumer<String> consumer) {
+                    }
+                }));
+    }
+
+    @Test
+    void testQuantileAttributesReportDistributionInOrder() {
+        MultiStatisticsAccumulator all = new MultiStatisticsAccumulator(StatisticsAccumulator.QUANTILE_ATTRIBUTES);
+        testDecks.forEach(all);
+
+        Map<String, Long> totalPower = all.getAccumulator("totalPowerQuantiles").getStatistics();
+        assertEquals(List.of("count", "min", "p50", "p90", "p99", "max"), List.copyOf(totalPower.keySet()));
+        assertEquals(List.of(2L, 6L, 6L, 6L, 6L, 8L), List.copyOf(totalPower.values()));
+        assertEquals(List.of(2L, 13L, 13L, 13L, 13L, 17L),
+                List.copyOf(all.getAccumulator("provisionUsedQuantiles").getStatistics().values()));
+        assertEquals(List.of(2L, 3L, 3L, 3L, 3L, 3L),
+                List.copyOf(all.getAccumulator("cardCountQuantiles").getStatistics().values()));
+        assertTrue(new StatisticsAccumulator("cardCountQuantiles").getStatistics().isEmpty());
+        assertFalse(MultiStatisticsAccumulator.parseAttributes("all").contains("totalPowerQuantiles"));
+    }
+
+    @Test
+    void testQuantilesStayWithinAccuracyAndMergeExactly() {
+        Random random = new Random(42);
+        List<Deck> decks = new ArrayList<>();
+        List<Integer> powers = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            // Skewed power: mostly small decks, a long tail of large ones
+            int power = (int) Math.exp(random.nextGaussian() * 1.5 + 4);
+            powers.add(power);
+            decks.add(new Deck("Deck " + i, Faction.MONSTERS, "Ability", 150, "Tempo",
+                    List.of(new Card("Card", 4, power, CardType.UNIT, Faction.MONSTERS))));
+        }
+        Collections.sort(powers);
+
+        for (double accuracy : new double[]{0.01, 0.001}) {
+            StatisticsAccumulator quantiles = new StatisticsAccumulator("totalPowerQuantiles", 0, accuracy);
+            decks.forEach(quantiles);
+            Map<String, Long> statistics = quantiles.getStatistics();
+
+            assertEquals(powers.get(0), statistics.get("min").intValue());
+            assertEquals(powers.get(powers.size() - 1), statistics.get("max").intValue());
+            String[] labels = {"p50", "p90", "p99"};
+            for (int i = 0; i < labels.length; i++) {
+                int exact = powers.get((int) Math.floor(QuantileCounter.QUANTILES[i] * (powers.size() - 1)));
+                // Within the relative accuracy, then rounded to a whole number
+                assertEquals(exact, statistics.get(labels[i]), exact * accuracy + 0.5, labels[i]);
+            }
+        }
+
+        List<String> attributes = List.of("totalPowerQuantiles");
+        MultiStatisticsAccumulator sequential = new MultiStatisticsAccumulator(attributes);
+        decks.forEach(sequential);
+        assertEquals(sequential.getAccumulator("totalPowerQuantiles").getStatistics(),
+                new StatisticsCalculator(4).aggregate(decks, attributes)
+                        .getAccumulator("totalPowerQuantiles").getStatistics());
+
+        StatisticsAccumulator distribution = sequential.getAccumulator("totalPowerQuantiles");
+        assertTrue(distribution.isDistribution());
+        assertFalse(distribution.isCacheable());
+        assertThrows(UnsupportedOperationException.class, () -> distribution.subtract(distribution));
+        assertThrows(IllegalArgumentException.class,
+                () -> distribution.merge(new StatisticsAccumulator("totalPowerQuantiles", 0, 0.05)));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsAccumulator("totalPowerQuantiles", 0, 1));
+        // Finer accuracies would need millions of buckets per partial
+        assertThrows(IllegalArgumentException.class, () -> new QuantileCounter(1e-9));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsAccumulator("totalPowerQuantiles", 0, 1e-6));
+        QuantileCounter finest = new QuantileCounter(StatisticsAccumulator.MIN_QUANTILE_ACCURACY);
+        finest.add(Integer.MAX_VALUE, 1);
+        assertEquals(Integer.MAX_VALUE, finest.quantile(0.5));
+        assertThrows(IllegalArgumentException.class, () -> new StatisticsCube(List.of("faction", "cardCountQuantiles")));
+    }
+
+    @Test
+    void testTopValuesMatchFullSortPrefixWithTies() {
+        Random random = new Random(7);
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // Few distinct counts over many abilities, so most of the cut falls between ties
+            decks.add(new Deck("Deck " + i, Faction.MONSTERS, "Ability " + random.nextInt(1500), 150, "Tempo",
+                    List.of()));
+        }
+        List<Map.Entry<String, Long>> sorted =
+                List.copyOf(calculator.calculateStatistics(decks, "leaderAbility").entrySet());
+
+        for (int top : new int[]{1, 5, 20, sorted.size(), sorted.size() + 5}) {
+            Map<String, Long> selected = calculator.calculateStatistics(decks, "leaderAbility", top);
+            assertEquals(sorted.subList(0, Math.min(top, sorted.size())), List.copyOf(selected.entrySet()),
+                    "top " + top);
+        }
+
+        // The selection does not depend on the order values were counted in
+        List<Deck> shuffled = new ArrayList<>(decks);
+        Collections.shuffle(shuffled, random);
+        assertEquals(List.copyOf(calculator.calculateStatistics(decks, "leaderAbility", 20).entrySet()),
+                List.copyOf(calculator.calculateStatistics(shuffled, "leaderAbility", 20).entrySet()));
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculateStatistics(decks, "faction", -1));
+    }
+
+    @Test
+    void testTopLimitsApproximateStatisticsAndSparesDistributions() {
+        List<Deck> decks = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            decks.add(new Deck("Deck " + i, Faction.SKELLIGE, "Ability " + i % 10 * (i % 10), 150, "Tempo",
+                    List.of()));
+        }
+        StatisticsAccumulator sketch = new StatisticsAccumulator("leaderAbility", 5);
+        decks.forEach(sketch);
+
+        List<Map.Entry<String, Long>> topK = List.copyOf(sketch.getStatistics().entrySet());
+        assertEquals(topK.subList(0, 2), List.copyOf(sketch.getStatistics(2).entrySet()));
+        assertEquals(List.copyOf(sketch.getStatistics(2).keySet()), List.copyOf(sketch.getErrorBounds(2).keySet()));
+        // Unlisted values are now bounded by the third estimate
+        assertEquals(topK.get(2).getValue(), sketch.getErrorBound(2));
+        // A top above K still reports K values
+        assertEquals(topK, List.copyOf(sketch.getStatistics(50).entrySet()));
+        assertEquals(sketch.getErrorBound(), sketch.getErrorBound(50));
+
+        StatisticsAccumulator distribution = new StatisticsAccumulator("cardCountQuantiles");
+        testDecks.forEach(distribution);
+        assertEquals(distribution.getStatistics(), distribution.getStatistics(2));
+    }
+}